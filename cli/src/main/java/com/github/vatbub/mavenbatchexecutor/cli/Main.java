@@ -21,30 +21,77 @@ package com.github.vatbub.mavenbatchexecutor.cli;
  */
 
 
+import com.github.vatbub.mavenbatchexecutor.core.BuildEvent;
+import com.github.vatbub.mavenbatchexecutor.core.BuildOutputCache;
 import com.github.vatbub.mavenbatchexecutor.core.BuildResult;
 import com.github.vatbub.mavenbatchexecutor.core.Executor;
+import com.github.vatbub.mavenbatchexecutor.core.GitChangeDetector;
+import com.github.vatbub.mavenbatchexecutor.core.GraphCache;
+import com.github.vatbub.mavenbatchexecutor.core.InvokerBackend;
+import com.github.vatbub.mavenbatchexecutor.core.MavenDaemonBackend;
+import com.github.vatbub.mavenbatchexecutor.core.MetricsHttpServer;
 import com.github.vatbub.mavenbatchexecutor.core.Project;
 import com.github.vatbub.mavenbatchexecutor.core.ProjectList;
+import com.github.vatbub.mavenbatchexecutor.core.ResourceBudget;
+import com.github.vatbub.mavenbatchexecutor.core.ResourceWeight;
+import com.github.vatbub.mavenbatchexecutor.core.RetryPolicy;
+import com.github.vatbub.mavenbatchexecutor.core.WorkspaceScanner;
 import org.apache.commons.cli.*;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 
 import java.io.File;
-import java.io.FileFilter;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
 
 
 public class Main {
     static Options options;
     private static Option parentFolderOption;
+    private static Option includeOption;
+    private static Option excludeOption;
+    private static Option maxDepthOption;
     private static Option projectListOption;
     private static Option smartOrderOption;
+    private static Option moduleGranularityOption;
     private static Option mavenGoalsOption;
     private static Option executeBuildsInParallelOption;
     private static Option outputSettingOption;
     private static Option mavenHomeOption;
+    private static Option threadsOption;
+    private static Option logDirectoryOption;
+    private static Option logRetentionOption;
+    private static Option backendOption;
+    private static Option mvndExecutableOption;
+    private static Option incrementalOption;
+    private static Option changesOption;
+    private static Option recordRevisionsOption;
+    private static Option outputCacheOption;
+    private static Option outputCacheSizeOption;
+    private static Option outputCacheHardLinksOption;
+    private static Option memoryBudgetOption;
+    private static Option cpuBudgetOption;
+    private static Option resourceWeightsOption;
+    private static Option failurePolicyOption;
+    private static Option timeoutOption;
+    private static Option silenceTimeoutOption;
+    private static Option totalTimeoutOption;
+    private static Option retriesOption;
+    private static Option retryBackoffOption;
+    private static Option retryGoalsOption;
+    private static Option stagesOption;
+    private static Option artifactStageOption;
+    private static Option metricsFileOption;
+    private static Option metricsSummaryFileOption;
+    private static Option metricsPortOption;
+    private static Option traceFileOption;
 
     public static void main(String[] args) throws ParseException, InterruptedException, XmlPullParserException, IOException {
         CommandLineParser parser = new DefaultParser();
@@ -56,17 +103,19 @@ public class Main {
             String parentFolderAsString = commandLine.getOptionValue(getParentFolderOption().getOpt());
             File parentFolder = new File(parentFolderAsString);
 
-            FileFilter directoryFileFilter = File::isDirectory;
-
-            File[] subfolders = parentFolder.listFiles(directoryFileFilter);
-
-            if (subfolders == null)
-                throw new NullPointerException("The specified parent folder does not contain any subfolders!");
-
-            projectList = new ProjectList(subfolders.length);
-            for (File subfolder : subfolders) {
-                projectList.add(new Project(subfolder));
-            }
+            WorkspaceScanner scanner = new WorkspaceScanner(parentFolder);
+            scanner.setEventListener(Main::printEvent);
+            if (commandLine.hasOption(getIncludeOption().getOpt()))
+                scanner.setIncludes(Arrays.asList(commandLine.getOptionValue(getIncludeOption().getOpt()).split(";")));
+            if (commandLine.hasOption(getExcludeOption().getOpt()))
+                scanner.setExcludes(Arrays.asList(commandLine.getOptionValue(getExcludeOption().getOpt()).split(";")));
+            if (commandLine.hasOption(getMaxDepthOption().getOpt()))
+                scanner.setMaxDepth(Integer.parseInt(commandLine.getOptionValue(getMaxDepthOption().getOpt())));
+
+            projectList = scanner.scan();
+            if (projectList.isEmpty())
+                throw new IllegalArgumentException("The specified parent folder does not contain any maven projects!");
+            projectList.setGraphCacheFile(GraphCache.getDefaultCacheFile(parentFolder));
         }
 
 
@@ -83,9 +132,13 @@ public class Main {
             throw new NullPointerException("Either pf or pl must be specified!");
 
         Executor executor = new Executor(projectList);
+        // warnings which occur while the graph is resolved are published together with the events of the builds
+        projectList.setEventListener(executor.getEventPublisher());
 
         if (commandLine.hasOption(getSmartOrderOption().getOpt()))
             executor.setSmartOrder(true);
+        if (commandLine.hasOption(getModuleGranularityOption().getOpt()))
+            executor.setModuleGranularity(true);
 
         String mavenGoalsString = commandLine.getOptionValue(getMavenGoalsOption().getOpt());
         String[] goalArray = mavenGoalsString.split(";");
@@ -96,46 +149,301 @@ public class Main {
         if (commandLine.hasOption(getExecuteBuildsInParallelOption().getOpt()))
             executor.setExecuteBuildsInParallel(true);
 
+        if (commandLine.hasOption(getThreadsOption().getOpt()))
+            executor.setThreads(Integer.parseInt(commandLine.getOptionValue(getThreadsOption().getOpt())));
+
         if (commandLine.hasOption(getOutputSettingOption().getOpt())) {
             Executor.OutputSetting outputSetting = Executor.OutputSetting.valueOf(commandLine.getOptionValue(getOutputSettingOption().getOpt()));
             executor.setOutputSetting(outputSetting);
         }
 
+        if (commandLine.hasOption(getLogDirectoryOption().getOpt()))
+            executor.setLogDirectory(new File(commandLine.getOptionValue(getLogDirectoryOption().getOpt())));
+
+        if (commandLine.hasOption(getLogRetentionOption().getOpt()))
+            executor.setLogRetention(Integer.parseInt(commandLine.getOptionValue(getLogRetentionOption().getOpt())));
+
         if (commandLine.hasOption(getMavenHomeOption().getOpt())) {
             String mavenHome = commandLine.getOptionValue(getMavenHomeOption().getOpt());
             executor.setMavenHome(mavenHome);
         }
 
-        List<BuildResult> buildResults = executor.executeBuilds();
+        if (commandLine.hasOption(getBackendOption().getOpt())) {
+            String backend = commandLine.getOptionValue(getBackendOption().getOpt());
+            switch (backend) {
+                case "INVOKER":
+                    executor.setBackend(new InvokerBackend());
+                    break;
+                case "MVND":
+                    if (commandLine.hasOption(getMvndExecutableOption().getOpt()))
+                        executor.setBackend(new MavenDaemonBackend(new File(commandLine.getOptionValue(getMvndExecutableOption().getOpt()))));
+                    else
+                        executor.setBackend(new MavenDaemonBackend());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown backend: " + backend);
+            }
+        }
+
+        if (commandLine.hasOption(getIncrementalOption().getOpt()))
+            executor.setIncrementalBuild(true);
+
+        if (commandLine.hasOption(getRecordRevisionsOption().getOpt()))
+            executor.setRecordRevisions(true);
+
+        if (commandLine.hasOption(getOutputCacheOption().getOpt())) {
+            String outputCacheDirectory = commandLine.getOptionValue(getOutputCacheOption().getOpt());
+            long outputCacheSizeInMegabytes = Long.parseLong(commandLine.getOptionValue(getOutputCacheSizeOption().getOpt(), "10240"));
+            BuildOutputCache buildOutputCache = new BuildOutputCache(outputCacheDirectory == null ? BuildOutputCache.getDefaultDirectory() : new File(outputCacheDirectory), outputCacheSizeInMegabytes * 1024 * 1024);
+            buildOutputCache.setUseHardLinks(commandLine.hasOption(getOutputCacheHardLinksOption().getOpt()));
+            executor.setBuildOutputCache(buildOutputCache);
+        }
+
+        if (commandLine.hasOption(getMemoryBudgetOption().getOpt()) || commandLine.hasOption(getCpuBudgetOption().getOpt())) {
+            long memoryBudget = commandLine.hasOption(getMemoryBudgetOption().getOpt())
+                    ? Long.parseLong(commandLine.getOptionValue(getMemoryBudgetOption().getOpt()))
+                    : Long.MAX_VALUE;
+            int cpuBudget = commandLine.hasOption(getCpuBudgetOption().getOpt())
+                    ? Integer.parseInt(commandLine.getOptionValue(getCpuBudgetOption().getOpt()))
+                    : Runtime.getRuntime().availableProcessors();
+            executor.setResourceBudget(new ResourceBudget(memoryBudget, cpuBudget));
+        }
+
+        if (commandLine.hasOption(getResourceWeightsOption().getOpt()))
+            readResourceWeights(new File(commandLine.getOptionValue(getResourceWeightsOption().getOpt())), projectList, executor);
+
+        if (commandLine.hasOption(getFailurePolicyOption().getOpt()))
+            executor.setFailurePolicy(Executor.FailurePolicy.valueOf(commandLine.getOptionValue(getFailurePolicyOption().getOpt())));
+
+        if (commandLine.hasOption(getTimeoutOption().getOpt())) {
+            for (String timeout : commandLine.getOptionValue(getTimeoutOption().getOpt()).split(";")) {
+                int separatorIndex = timeout.indexOf('=');
+                if (separatorIndex < 0) {
+                    executor.setBuildTimeout(Duration.ofSeconds(Long.parseLong(timeout.trim())));
+                    continue;
+                }
+                String canonicalPath = new File(timeout.substring(0, separatorIndex)).getCanonicalPath();
+                Duration projectTimeout = Duration.ofSeconds(Long.parseLong(timeout.substring(separatorIndex + 1).trim()));
+                for (Project project : projectList) {
+                    if (project.getProjectFolder().getCanonicalPath().equals(canonicalPath))
+                        executor.getBuildTimeouts().put(project, projectTimeout);
+                }
+            }
+        }
+
+        if (commandLine.hasOption(getSilenceTimeoutOption().getOpt()))
+            executor.setSilenceTimeout(Duration.ofSeconds(Long.parseLong(commandLine.getOptionValue(getSilenceTimeoutOption().getOpt()))));
+
+        if (commandLine.hasOption(getTotalTimeoutOption().getOpt()))
+            executor.setTotalTimeout(Duration.ofSeconds(Long.parseLong(commandLine.getOptionValue(getTotalTimeoutOption().getOpt()))));
+
+        if (commandLine.hasOption(getRetriesOption().getOpt())) {
+            int retries = Integer.parseInt(commandLine.getOptionValue(getRetriesOption().getOpt()));
+            Duration retryBackoff = Duration.ofSeconds(Long.parseLong(commandLine.getOptionValue(getRetryBackoffOption().getOpt(), "5")));
+            List<String> retryGoals = null;
+            if (commandLine.hasOption(getRetryGoalsOption().getOpt()))
+                retryGoals = new ArrayList<>(Arrays.asList(commandLine.getOptionValue(getRetryGoalsOption().getOpt()).split(";")));
+            executor.setRetryPolicy(new RetryPolicy(retries, retryBackoff, 2, Duration.ofMinutes(10), retryGoals));
+        }
+
+        if (commandLine.hasOption(getStagesOption().getOpt())) {
+            List<List<String>> stages = new ArrayList<>();
+            for (String stage : commandLine.getOptionValue(getStagesOption().getOpt()).split(","))
+                stages.add(new ArrayList<>(Arrays.asList(stage.split(";"))));
+            executor.setPipelineStages(stages);
+            if (commandLine.hasOption(getArtifactStageOption().getOpt()))
+                executor.setArtifactStage(Integer.parseInt(commandLine.getOptionValue(getArtifactStageOption().getOpt())) - 1);
+        }
+
+        if (commandLine.hasOption(getChangesOption().getOpt())) {
+            GitChangeDetector changeDetector = new GitChangeDetector();
+            for (String range : commandLine.getOptionValue(getChangesOption().getOpt()).split(";")) {
+                if (range.equals("LAST_SUCCESS"))
+                    continue;
+                int separatorIndex = range.indexOf('=');
+                if (separatorIndex < 0)
+                    changeDetector.setDefaultRange(range);
+                else
+                    changeDetector.setRange(new File(range.substring(0, separatorIndex)), range.substring(separatorIndex + 1));
+            }
+            executor.setChangeDetector(changeDetector);
+        }
+
+        if (commandLine.hasOption(getMetricsFileOption().getOpt()))
+            executor.setMetricsFile(new File(commandLine.getOptionValue(getMetricsFileOption().getOpt())));
+        if (commandLine.hasOption(getMetricsSummaryFileOption().getOpt()))
+            executor.setMetricsSummaryFile(new File(commandLine.getOptionValue(getMetricsSummaryFileOption().getOpt())));
+        if (commandLine.hasOption(getTraceFileOption().getOpt()))
+            executor.setTraceFile(new File(commandLine.getOptionValue(getTraceFileOption().getOpt())));
+
+        MetricsHttpServer metricsServer = null;
+        if (commandLine.hasOption(getMetricsPortOption().getOpt())) {
+            metricsServer = new MetricsHttpServer(Integer.parseInt(commandLine.getOptionValue(getMetricsPortOption().getOpt())), executor::getMetrics);
+            System.out.println("Serving metrics on http://localhost:" + metricsServer.getPort() + "/metrics");
+        }
+
+        CountDownLatch batchFinished = new CountDownLatch(1);
+        // log lines are printed according to the output setting, so the console does not subscribe to them
+        executor.getEventPublisher().addListener(event -> {
+            printEvent(event);
+            if (event.getType() == BuildEvent.Type.BATCH_FINISHED)
+                batchFinished.countDown();
+        }, EnumSet.complementOf(EnumSet.of(BuildEvent.Type.LOG_LINE)));
+
+        List<BuildResult> buildResults;
+        try {
+            buildResults = executor.executeBuilds();
+        } finally {
+            if (metricsServer != null)
+                metricsServer.close();
+        }
+        // events are delivered asynchronously, print the summary after the last of them
+        batchFinished.await();
         for (BuildResult buildResult : buildResults) {
+            System.out.println(buildResult + " (waited " + buildResult.getQueueWaitTime().toMillis() + " ms for a free worker)");
+            if (buildResult.getFailedDependency() != null)
+                System.out.println("    Skipped as the build of " + buildResult.getFailedDependency().getDisplayName() + " failed");
+            if (buildResult.getExecutionException() != null)
+                System.out.println("    Build could not be executed: " + buildResult.getExecutionException());
             if (buildResult.getLogOutputFile() != null)
                 System.out.println("Build log saved in: " + buildResult.getLogOutputFile().getAbsolutePath());
         }
     }
 
+    private static void printEvent(BuildEvent event) {
+        String prefix = event.getProject() == null ? "" : "(" + event.getProject().getDisplayName() + "): ";
+        switch (event.getType()) {
+            case GRAPH_RESOLVED:
+                System.out.println("Build order:");
+                for (Project project : event.getProjects())
+                    System.out.println(project.getDisplayName());
+                break;
+            case PROJECT_STARTED:
+                if (event.getRetryCount() > 0)
+                    System.out.println(prefix + "Retry " + event.getRetryCount() + " started...");
+                else
+                    System.out.println(prefix + "Build started...");
+                break;
+            case PROJECT_FINISHED:
+                System.out.println(prefix + "Build finished!");
+                break;
+            case PROJECT_FAILED:
+                System.out.println(prefix + "Build failed!");
+                break;
+            case PROJECT_SKIPPED:
+                if (event.getResult() != null && event.getResult().getStatus() == BuildResult.Status.UP_TO_DATE)
+                    System.out.println(prefix + "Up to date, skipping the build");
+                else if (event.getResult() != null && event.getResult().getStatus() == BuildResult.Status.CACHED)
+                    System.out.println(prefix + "Restored the build outputs from the cache, skipping the build");
+                break;
+            case PROJECT_RETRY_SCHEDULED:
+            case WARNING:
+                System.out.println(prefix + event.getMessage());
+                break;
+            default:
+                // queueing is not interesting on the console
+                break;
+        }
+    }
+
+    private static void readResourceWeights(File weightsFile, ProjectList projectList, Executor executor) throws IOException {
+        Properties weights = new Properties();
+        try (InputStream inputStream = new FileInputStream(weightsFile)) {
+            weights.load(inputStream);
+        }
+
+        for (String projectPath : weights.stringPropertyNames()) {
+            String[] weight = weights.getProperty(projectPath).split(",");
+            ResourceWeight resourceWeight = new ResourceWeight(Long.parseLong(weight[0].trim()), weight.length > 1 ? Integer.parseInt(weight[1].trim()) : 1);
+            String canonicalPath = new File(projectPath).getCanonicalPath();
+            for (Project project : projectList) {
+                if (project.getProjectFolder().getCanonicalPath().equals(canonicalPath))
+                    executor.getResourceWeights().put(project, resourceWeight);
+            }
+        }
+    }
+
     public static Options getOptions() {
         if (options == null) {
             options = new Options();
             options.addOption(getParentFolderOption());
+            options.addOption(getIncludeOption());
+            options.addOption(getExcludeOption());
+            options.addOption(getMaxDepthOption());
             options.addOption(getProjectListOption());
             options.addOption(getSmartOrderOption());
+            options.addOption(getModuleGranularityOption());
             options.addOption(getMavenGoalsOption());
             options.addOption(getExecuteBuildsInParallelOption());
             options.addOption(getOutputSettingOption());
             options.addOption(getMavenHomeOption());
+            options.addOption(getThreadsOption());
+            options.addOption(getLogDirectoryOption());
+            options.addOption(getLogRetentionOption());
+            options.addOption(getBackendOption());
+            options.addOption(getMvndExecutableOption());
+            options.addOption(getIncrementalOption());
+            options.addOption(getChangesOption());
+            options.addOption(getRecordRevisionsOption());
+            options.addOption(getOutputCacheOption());
+            options.addOption(getOutputCacheSizeOption());
+            options.addOption(getOutputCacheHardLinksOption());
+            options.addOption(getMemoryBudgetOption());
+            options.addOption(getCpuBudgetOption());
+            options.addOption(getResourceWeightsOption());
+            options.addOption(getFailurePolicyOption());
+            options.addOption(getTimeoutOption());
+            options.addOption(getSilenceTimeoutOption());
+            options.addOption(getTotalTimeoutOption());
+            options.addOption(getRetriesOption());
+            options.addOption(getRetryBackoffOption());
+            options.addOption(getRetryGoalsOption());
+            options.addOption(getStagesOption());
+            options.addOption(getArtifactStageOption());
+            options.addOption(getMetricsFileOption());
+            options.addOption(getMetricsSummaryFileOption());
+            options.addOption(getMetricsPortOption());
+            options.addOption(getTraceFileOption());
         }
         return options;
     }
 
     public static Option getParentFolderOption() {
         if (parentFolderOption == null) {
-            parentFolderOption = new Option("pf", "parentFolder", true, "The parent folder which contains all projects to be build. Note: Each of the subfolders must contain a pom file. Folders which do not contain a pom file will cause that particular build to fail.");
+            parentFolderOption = new Option("pf", "parentFolder", true, "The parent folder which contains all projects to be build. Every subfolder which contains a pom file is a project, a pom in the parent folder itself is ignored. Use maxDepth to search deeper. Hidden folders and folders listed in a " + WorkspaceScanner.IGNORE_FILE_NAME + " file are skipped.");
             parentFolderOption.setRequired(false);
         }
 
         return parentFolderOption;
     }
 
+    public static Option getIncludeOption() {
+        if (includeOption == null) {
+            includeOption = new Option("include", "include", true, "Only builds the projects found in the parent folder whose path relative to the parent folder matches one of these globs, separated by semicolons, e. g. libs/**;apps/*");
+            includeOption.setRequired(false);
+        }
+
+        return includeOption;
+    }
+
+    public static Option getExcludeOption() {
+        if (excludeOption == null) {
+            excludeOption = new Option("exclude", "exclude", true, "Skips the folders below the parent folder which match one of these globs, separated by semicolons, e. g. archive/*;experimental. Globs without a slash match folder names at any depth.");
+            excludeOption.setRequired(false);
+        }
+
+        return excludeOption;
+    }
+
+    public static Option getMaxDepthOption() {
+        if (maxDepthOption == null) {
+            maxDepthOption = new Option("maxDepth", "maxDepth", true, "How many folder levels below the parent folder are searched for projects. Folders without a pom file are searched up to this depth, the subfolders of projects are never searched. Defaults to 1, which only looks at the direct subfolders.");
+            maxDepthOption.setRequired(false);
+        }
+
+        return maxDepthOption;
+    }
+
     public static Option getProjectListOption() {
         if (projectListOption == null) {
             projectListOption = new Option("pl", "projectList", true, "The list of projects to build. The projects are specified by specifying their base path (the path where the pom is in). Multiple projects must be separated through a semicolon (;)");
@@ -154,6 +462,15 @@ public class Main {
         return smartOrderOption;
     }
 
+    public static Option getModuleGranularityOption() {
+        if (moduleGranularityOption == null) {
+            moduleGranularityOption = new Option("modules", "moduleGranularity", false, "If specified, every module of a multi-module project is built on its own (mvn -pl <module>), so that independent modules of different projects can be built at the same time. Requires the install goal as modules use the artifacts of the other modules from the local maven repository.");
+            moduleGranularityOption.setRequired(false);
+        }
+
+        return moduleGranularityOption;
+    }
+
     public static Option getMavenGoalsOption() {
         if (mavenGoalsOption == null) {
             mavenGoalsOption = new Option("g", "goals", true, "The list of goals to execute. All specified goals will be executed in all projects. Multiple goals must be separated through a semicolon (;)");
@@ -174,7 +491,7 @@ public class Main {
 
     public static Option getOutputSettingOption() {
         if (outputSettingOption == null) {
-            outputSettingOption = new Option("out", "outputSetting", true, "Specifies how the build log is treated. Possible values are: TO_FILE (default), TO_STANDARD_OUT and IGNORE");
+            outputSettingOption = new Option("out", "outputSetting", true, "Specifies how the build log is treated. Possible values are: TO_FILE (default), TO_COMPRESSED_FILE, TO_STANDARD_OUT and IGNORE");
             outputSettingOption.setRequired(false);
         }
 
@@ -189,4 +506,248 @@ public class Main {
 
         return mavenHomeOption;
     }
+
+    public static Option getThreadsOption() {
+        if (threadsOption == null) {
+            threadsOption = new Option("threads", "threads", true, "The maximum number of builds to execute at the same time if builds are executed in parallel. Defaults to the number of available processors.");
+            threadsOption.setRequired(false);
+        }
+
+        return threadsOption;
+    }
+
+    public static Option getLogDirectoryOption() {
+        if (logDirectoryOption == null) {
+            logDirectoryOption = new Option("ld", "logDirectory", true, "The folder in which compressed build logs are stored if the output setting is TO_COMPRESSED_FILE. Each run creates its own subfolder. Defaults to ~/.mavenbatchexecutor/logs");
+            logDirectoryOption.setRequired(false);
+        }
+
+        return logDirectoryOption;
+    }
+
+    public static Option getLogRetentionOption() {
+        if (logRetentionOption == null) {
+            logRetentionOption = new Option("lr", "logRetention", true, "The number of runs whose compressed build logs are kept in the log directory. Defaults to 10");
+            logRetentionOption.setRequired(false);
+        }
+
+        return logRetentionOption;
+    }
+
+    public static Option getBackendOption() {
+        if (backendOption == null) {
+            backendOption = new Option("backend", "backend", true, "Specifies how the individual builds are run. Possible values are: INVOKER (default, forks a new maven process per build) and MVND (runs the builds in long-lived maven daemons, requires mvnd)");
+            backendOption.setRequired(false);
+        }
+
+        return backendOption;
+    }
+
+    public static Option getMvndExecutableOption() {
+        if (mvndExecutableOption == null) {
+            mvndExecutableOption = new Option("mvnd", "mvndExecutable", true, "The mvnd executable to use if the backend is MVND. Defaults to the mvnd executable on the PATH.");
+            mvndExecutableOption.setRequired(false);
+        }
+
+        return mvndExecutableOption;
+    }
+
+    public static Option getIncrementalOption() {
+        if (incrementalOption == null) {
+            incrementalOption = new Option("inc", "incremental", false, "If specified, projects which did not change since their last successful build (including their upstream projects and the goals) are skipped.");
+            incrementalOption.setRequired(false);
+        }
+
+        return incrementalOption;
+    }
+
+    public static Option getChangesOption() {
+        if (changesOption == null) {
+            changesOption = new Option("changes", "changes", true, "If specified, only projects which contain changes according to git and the projects which depend on them are built. The value is either LAST_SUCCESS (compare each project to the revision of its last successful build), a git revision range which is used for all repositories (e. g. origin/master...HEAD) or a list of repositoryFolder=range pairs separated through a semicolon (;). Repositories without a range are compared to the last successful build.");
+            changesOption.setRequired(false);
+        }
+
+        return changesOption;
+    }
+
+    public static Option getRecordRevisionsOption() {
+        if (recordRevisionsOption == null) {
+            recordRevisionsOption = new Option("rr", "recordRevisions", false, "If specified, the git revision of every successful build is recorded even if -changes is not specified, so that a later run with -changes LAST_SUCCESS only builds what changed since this run.");
+            recordRevisionsOption.setRequired(false);
+        }
+
+        return recordRevisionsOption;
+    }
+
+    public static Option getOutputCacheOption() {
+        if (outputCacheOption == null) {
+            outputCacheOption = new Option("oc", "outputCache", true, "If specified, the build outputs (jars and installed artifacts) are cached in the specified folder and restored instead of building a project if its inputs were built before. Defaults to ~/.mavenbatchexecutor/outputCache if no folder is specified.");
+            outputCacheOption.setOptionalArg(true);
+            outputCacheOption.setRequired(false);
+        }
+
+        return outputCacheOption;
+    }
+
+    public static Option getOutputCacheSizeOption() {
+        if (outputCacheSizeOption == null) {
+            outputCacheSizeOption = new Option("ocs", "outputCacheSize", true, "The maximum size of the build output cache in megabytes. The least recently used entries are deleted if the cache grows larger. Defaults to 10240");
+            outputCacheSizeOption.setRequired(false);
+        }
+
+        return outputCacheSizeOption;
+    }
+
+    public static Option getOutputCacheHardLinksOption() {
+        if (outputCacheHardLinksOption == null) {
+            outputCacheHardLinksOption = new Option("ochl", "outputCacheHardLinks", false, "If specified, build outputs are restored from the cache as hard links instead of copies. The linked files are read-only, so builds which write to them in place fail.");
+            outputCacheHardLinksOption.setRequired(false);
+        }
+
+        return outputCacheHardLinksOption;
+    }
+
+    public static Option getMemoryBudgetOption() {
+        if (memoryBudgetOption == null) {
+            memoryBudgetOption = new Option("memoryBudget", "memoryBudget", true, "The memory in megabytes which all builds running in parallel may use together. Builds wait until enough memory is available according to their weight. If only the cpu budget is specified, memory is not limited.");
+            memoryBudgetOption.setRequired(false);
+        }
+
+        return memoryBudgetOption;
+    }
+
+    public static Option getCpuBudgetOption() {
+        if (cpuBudgetOption == null) {
+            cpuBudgetOption = new Option("cpuBudget", "cpuBudget", true, "The number of cpus which all builds running in parallel may use together. Defaults to the number of available processors if only the memory budget is specified.");
+            cpuBudgetOption.setRequired(false);
+        }
+
+        return cpuBudgetOption;
+    }
+
+    public static Option getResourceWeightsOption() {
+        if (resourceWeightsOption == null) {
+            resourceWeightsOption = new Option("weights", "resourceWeights", true, "A properties file which assigns weights to projects if a memory or cpu budget is specified. Each line has the form projectFolder=memoryInMegabytes[,cpus]. Projects without a configured weight use the peak memory usage of their last build or 1024 MB and 1 cpu if that is unknown.");
+            resourceWeightsOption.setRequired(false);
+        }
+
+        return resourceWeightsOption;
+    }
+
+    public static Option getFailurePolicyOption() {
+        if (failurePolicyOption == null) {
+            failurePolicyOption = new Option("fp", "failurePolicy", true, "Specifies what happens if a build fails. Possible values are: FAIL_AT_END (default, skips the projects which depend on the failed project), FAIL_NEVER (builds all projects anyway) and FAIL_FAST (cancels all other builds)");
+            failurePolicyOption.setRequired(false);
+        }
+
+        return failurePolicyOption;
+    }
+
+    public static Option getTimeoutOption() {
+        if (timeoutOption == null) {
+            timeoutOption = new Option("timeout", "timeout", true, "The maximum duration of a single build in seconds. Builds which take longer are stopped including all processes they started. Timeouts of individual projects are specified as semicolon separated projectFolder=seconds pairs, e. g. 60;/path/to/slowProject=600");
+            timeoutOption.setRequired(false);
+        }
+
+        return timeoutOption;
+    }
+
+    public static Option getSilenceTimeoutOption() {
+        if (silenceTimeoutOption == null) {
+            silenceTimeoutOption = new Option("silenceTimeout", "silenceTimeout", true, "Builds which do not print anything for the specified number of seconds are considered hung and are stopped");
+            silenceTimeoutOption.setRequired(false);
+        }
+
+        return silenceTimeoutOption;
+    }
+
+    public static Option getTotalTimeoutOption() {
+        if (totalTimeoutOption == null) {
+            totalTimeoutOption = new Option("totalTimeout", "totalTimeout", true, "The maximum duration of all builds together in seconds. When it expires, all running builds are stopped and the remaining builds are cancelled");
+            totalTimeoutOption.setRequired(false);
+        }
+
+        return totalTimeoutOption;
+    }
+
+    public static Option getRetriesOption() {
+        if (retriesOption == null) {
+            retriesOption = new Option("retries", "retries", true, "The maximum number of times a failed build is retried. Projects which depend on the failed project wait for the retries, projects which were built already are not built again.");
+            retriesOption.setRequired(false);
+        }
+
+        return retriesOption;
+    }
+
+    public static Option getRetryBackoffOption() {
+        if (retryBackoffOption == null) {
+            retryBackoffOption = new Option("retryBackoff", "retryBackoff", true, "The number of seconds to wait before the first retry of a failed build (default: 5). The time doubles with every further retry.");
+            retryBackoffOption.setRequired(false);
+        }
+
+        return retryBackoffOption;
+    }
+
+    public static Option getRetryGoalsOption() {
+        if (retryGoalsOption == null) {
+            retryGoalsOption = new Option("retryGoals", "retryGoals", true, "The goals to use when retrying a failed build, separated by semicolons, e. g. -o;-DskipTests;install. Defaults to the regular goals.");
+            retryGoalsOption.setRequired(false);
+        }
+
+        return retryGoalsOption;
+    }
+
+    public static Option getStagesOption() {
+        if (stagesOption == null) {
+            stagesOption = new Option("stages", "stages", true, "Pipelines the builds: every project is built in several stages, each with its own goals. Stages are separated by commas, the goals of a stage by semicolons, e. g. -DskipTests;install,surefire:test. The dependents of a project start as soon as the artifact stage of the project finished while its later stages keep running. Replaces the goals specified with -g.");
+            stagesOption.setRequired(false);
+        }
+
+        return stagesOption;
+    }
+
+    public static Option getArtifactStageOption() {
+        if (artifactStageOption == null) {
+            artifactStageOption = new Option("artifactStage", "artifactStage", true, "The number of the stage (starting at 1) after which the dependents of a project may start building, e. g. the stage that installs the artifacts. Defaults to the last stage.");
+            artifactStageOption.setRequired(false);
+        }
+
+        return artifactStageOption;
+    }
+
+    public static Option getMetricsFileOption() {
+        if (metricsFileOption == null) {
+            metricsFileOption = new Option("metricsFile", "metricsFile", true, "The file to write the metrics of the batch to in the Prometheus text format, e. g. for the textfile collector of the node exporter");
+            metricsFileOption.setRequired(false);
+        }
+
+        return metricsFileOption;
+    }
+
+    public static Option getMetricsSummaryFileOption() {
+        if (metricsSummaryFileOption == null) {
+            metricsSummaryFileOption = new Option("metricsJson", "metricsJson", true, "The file to write a JSON summary of the metrics of the batch to");
+            metricsSummaryFileOption.setRequired(false);
+        }
+
+        return metricsSummaryFileOption;
+    }
+
+    public static Option getMetricsPortOption() {
+        if (metricsPortOption == null) {
+            metricsPortOption = new Option("metricsPort", "metricsPort", true, "Serves the metrics on http://localhost:<port>/metrics in the Prometheus text format while the builds are running");
+            metricsPortOption.setRequired(false);
+        }
+
+        return metricsPortOption;
+    }
+
+    public static Option getTraceFileOption() {
+        if (traceFileOption == null) {
+            traceFileOption = new Option("traceFile", "traceFile", true, "The file to write a timeline of the builds to in the trace event format, open it in chrome://tracing or https://ui.perfetto.dev");
+            traceFileOption.setRequired(false);
+        }
+
+        return traceFileOption;
+    }
 }
@@ -0,0 +1,232 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes build logs on a single background thread.
+ * Each log file is represented by a {@link Channel} which keeps its file open and buffered until the channel is closed.
+ * Lines are handed to the background thread through a bounded queue, so callers never wait for the disk
+ * (they only wait if the queue is full, i. e. if the disk cannot keep up at all).
+ * Buffers are flushed whenever the queue runs empty and when a channel is closed.
+ */
+class AsyncLogWriter implements Closeable {
+    private static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Record SHUTDOWN = new Record(null, null);
+
+    private final BlockingQueue<Record> queue;
+    private final Thread writerThread;
+    private final Set<Channel> openChannels = new LinkedHashSet<>();
+
+    AsyncLogWriter() {
+        this(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    AsyncLogWriter(int queueCapacity) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(this::writerLoop, "batch-build-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * @param logFile The file to append the lines of the channel to. The file is opened lazily by the background thread.
+     * @return A new channel which writes to the specified file
+     */
+    @NotNull
+    Channel openChannel(@NotNull File logFile) {
+        return new Channel(logFile, false);
+    }
+
+    /**
+     * @param logFile The file to write the gzip compressed lines of the channel to. An existing file is overwritten.
+     * @return A new channel which writes to the specified file
+     */
+    @NotNull
+    Channel openCompressedChannel(@NotNull File logFile) {
+        return new Channel(logFile, true);
+    }
+
+    /**
+     * Writes all pending lines, closes all channels and stops the background thread.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            queue.put(SHUTDOWN);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the build logs to be written");
+        }
+    }
+
+    private void writerLoop() {
+        try {
+            while (true) {
+                Record record = queue.poll();
+                if (record == null) {
+                    for (Channel channel : openChannels)
+                        channel.flush();
+                    record = queue.take();
+                }
+
+                if (record == SHUTDOWN)
+                    break;
+
+                if (record.line == null) {
+                    record.channel.closeWriter();
+                    openChannels.remove(record.channel);
+                } else {
+                    openChannels.add(record.channel);
+                    record.channel.writeToDisk(record.line);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Channel channel : openChannels)
+                channel.closeWriter();
+            openChannels.clear();
+        }
+    }
+
+    private static class Record {
+        private final Channel channel;
+        // null means that the channel shall be closed
+        private final String line;
+
+        Record(Channel channel, String line) {
+            this.channel = channel;
+            this.line = line;
+        }
+    }
+
+    class Channel implements Closeable {
+        @NotNull
+        private final File logFile;
+        private final boolean compressed;
+        private final CountDownLatch closedLatch = new CountDownLatch(1);
+        // only accessed by the writer thread until closedLatch is released
+        @Nullable
+        private Writer writer;
+        private volatile IOException failure;
+
+        private Channel(@NotNull File logFile, boolean compressed) {
+            this.logFile = logFile;
+            this.compressed = compressed;
+        }
+
+        @NotNull
+        public File getLogFile() {
+            return logFile;
+        }
+
+        /**
+         * Queues the specified line to be written. Returns immediately unless the queue is full.
+         */
+        void writeLine(@NotNull String line) throws IOException {
+            if (failure != null)
+                throw failure;
+            try {
+                queue.put(new Record(this, line));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while queueing a log line");
+            }
+        }
+
+        /**
+         * Writes and flushes all lines queued so far and closes the log file. Blocks until that is done.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                queue.put(new Record(this, null));
+                closedLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the build log to be written");
+            }
+            if (failure != null)
+                throw failure;
+        }
+
+        private void writeToDisk(@NotNull String line) {
+            if (failure != null)
+                return;
+            try {
+                if (writer == null)
+                    writer = openWriter();
+                writer.write(line);
+                writer.write('\n');
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        @NotNull
+        private Writer openWriter() throws IOException {
+            if (!compressed)
+                return new BufferedWriter(new FileWriter(logFile, true), BUFFER_SIZE);
+            return new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(logFile), BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        private void flush() {
+            if (writer == null || failure != null)
+                return;
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private void closeWriter() {
+            try {
+                // an empty compressed log still needs a valid gzip header
+                if (writer == null && compressed && failure == null)
+                    writer = openWriter();
+                if (writer != null)
+                    writer.close();
+            } catch (IOException e) {
+                if (failure == null)
+                    failure = e;
+            } finally {
+                writer = null;
+                closedLatch.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A batch of builds which was started using {@link Executor#startBuilds()} and runs in the background.
+ */
+public class BatchBuild {
+    @NotNull
+    private final ProjectList buildOrder;
+    @NotNull
+    private final BuildResultCollector resultCollector;
+    @NotNull
+    private final FutureTask<List<BuildResult>> task;
+    @NotNull
+    private final BuildMetrics metrics;
+
+    BatchBuild(@NotNull ProjectList buildOrder, @NotNull BuildResultCollector resultCollector, @NotNull FutureTask<List<BuildResult>> task, @NotNull BuildMetrics metrics) {
+        this.buildOrder = buildOrder;
+        this.resultCollector = resultCollector;
+        this.task = task;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The projects of this batch in the order in which they are built
+     */
+    @NotNull
+    public ProjectList getBuildOrder() {
+        return buildOrder;
+    }
+
+    /**
+     * @return The results of the builds which have finished so far, in build order
+     */
+    @NotNull
+    public List<BuildResult> getResults() {
+        return resultCollector.getResults();
+    }
+
+    /**
+     * @return The metrics of this batch, which are updated while the builds are running
+     */
+    @NotNull
+    public BuildMetrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean isDone() {
+        return task.isDone();
+    }
+
+    /**
+     * Blocks until every build of this batch has finished.
+     *
+     * @return The results of all builds in build order
+     */
+    @NotNull
+    public List<BuildResult> awaitCompletion() throws InterruptedException, IOException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof InterruptedException)
+                throw (InterruptedException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
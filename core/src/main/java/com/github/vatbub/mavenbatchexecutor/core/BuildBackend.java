@@ -0,0 +1,58 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs a single maven build for the {@link Executor}.
+ * Implementations must be thread safe as the executor calls them from several workers at the same time.
+ *
+ * @see InvokerBackend
+ * @see MavenDaemonBackend
+ */
+public interface BuildBackend {
+    /**
+     * Runs the specified build and blocks until it has finished.
+     *
+     * @param project The project to build
+     * @param request The fully configured request, including base directory, goals, maven home and output handler
+     * @return The result of the build
+     */
+    @NotNull
+    InvocationResult execute(@NotNull Project project, @NotNull InvocationRequest request) throws MavenInvocationException;
+
+    /**
+     * Forcibly stops the running build of the specified project, including all processes the build started.
+     * {@link #execute(Project, InvocationRequest)} returns as soon as the build was stopped.
+     * Backends which cannot stop builds do nothing.
+     *
+     * @param project The project whose build shall be stopped
+     * @return {@code true} if a running build of the project was found and stopped
+     */
+    default boolean kill(@NotNull Project project) {
+        return false;
+    }
+}
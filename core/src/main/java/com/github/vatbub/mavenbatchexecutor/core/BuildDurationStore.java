@@ -0,0 +1,91 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Remembers the wall-clock build time of each project across runs.
+ * The durations are kept in a properties file which maps the canonical path of the project folder to the duration of its last successful build in milliseconds.
+ */
+public class BuildDurationStore extends ProjectPropertyStore {
+    public BuildDurationStore(@NotNull File storeFile) throws IOException {
+        super(storeFile);
+    }
+
+    /**
+     * @return The default store which is located in the user home directory
+     */
+    @NotNull
+    public static File getDefaultStoreFile() {
+        return getDefaultStoreFile("buildDurations.properties");
+    }
+
+    /**
+     * @param project The project to look up
+     * @return The duration of the last recorded build of the specified project in milliseconds or {@code -1} if no build of that project was recorded yet.
+     */
+    public long getDuration(@NotNull Project project) {
+        return parseDuration(getValue(project));
+    }
+
+    public void setDuration(@NotNull Project project, long durationInMillis) {
+        setValue(project, Long.toString(durationInMillis));
+    }
+
+    /**
+     * @return The average of all recorded durations in milliseconds or {@code -1} if nothing was recorded yet.
+     */
+    public long getAverageDuration() {
+        Properties durations = getValues();
+        long sum = 0;
+        int count = 0;
+        for (String key : durations.stringPropertyNames()) {
+            long duration = parseDuration(durations.getProperty(key));
+            if (duration >= 0) {
+                sum += duration;
+                count++;
+            }
+        }
+        return count == 0 ? -1 : sum / count;
+    }
+
+    @NotNull
+    @Override
+    protected String getComment() {
+        return "Build durations recorded by the maven batch executor (in milliseconds)";
+    }
+
+    private static long parseDuration(String value) {
+        if (value == null)
+            return -1;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Something that happened while a batch was built, see {@link BuildEventPublisher}.
+ * Which properties are set depends on the {@link Type} of the event.
+ */
+public class BuildEvent {
+    @NotNull
+    private final Type type;
+    @NotNull
+    private final Instant time;
+    @Nullable
+    private final Project project;
+    @Nullable
+    private final BuildResult result;
+    @Nullable
+    private final String message;
+    @NotNull
+    private final List<Project> projects;
+    @NotNull
+    private final List<BuildResult> results;
+    private final int retryCount;
+
+    private BuildEvent(@NotNull Type type, @Nullable Project project, @Nullable BuildResult result, @Nullable String message, int retryCount) {
+        this(type, project, result, message, Collections.emptyList(), Collections.emptyList(), retryCount);
+    }
+
+    private BuildEvent(@NotNull Type type, @Nullable Project project, @Nullable BuildResult result, @Nullable String message,
+                       @NotNull List<Project> projects, @NotNull List<BuildResult> results, int retryCount) {
+        this.type = type;
+        this.time = Instant.now();
+        this.project = project;
+        this.result = result;
+        this.message = message;
+        this.projects = projects;
+        this.results = results;
+        this.retryCount = retryCount;
+    }
+
+    @NotNull
+    static BuildEvent graphResolved(@NotNull List<Project> buildOrder) {
+        return new BuildEvent(Type.GRAPH_RESOLVED, null, null, null, Collections.unmodifiableList(buildOrder), Collections.emptyList(), 0);
+    }
+
+    @NotNull
+    static BuildEvent projectQueued(@NotNull Project project, int retryCount) {
+        return new BuildEvent(Type.PROJECT_QUEUED, project, null, null, retryCount);
+    }
+
+    @NotNull
+    static BuildEvent projectStarted(@NotNull Project project, int retryCount) {
+        return new BuildEvent(Type.PROJECT_STARTED, project, null, null, retryCount);
+    }
+
+    @NotNull
+    static BuildEvent logLine(@NotNull Project project, @NotNull String line) {
+        return new BuildEvent(Type.LOG_LINE, project, null, line, 0);
+    }
+
+    /**
+     * @return A {@link Type#PROJECT_FINISHED}, {@link Type#PROJECT_SKIPPED} or {@link Type#PROJECT_FAILED} event, depending on the status of the result
+     */
+    @NotNull
+    static BuildEvent projectDone(@NotNull BuildResult result) {
+        Type type;
+        switch (result.getStatus()) {
+            case SUCCESS:
+                type = Type.PROJECT_FINISHED;
+                break;
+            case FAILED:
+            case TIMED_OUT:
+                type = Type.PROJECT_FAILED;
+                break;
+            default:
+                type = Type.PROJECT_SKIPPED;
+        }
+        return new BuildEvent(type, result.getProject(), result, null, result.getRetryCount());
+    }
+
+    @NotNull
+    static BuildEvent retryScheduled(@NotNull Project project, int retryCount, @NotNull String message) {
+        return new BuildEvent(Type.PROJECT_RETRY_SCHEDULED, project, null, message, retryCount);
+    }
+
+    @NotNull
+    static BuildEvent warning(@Nullable Project project, @NotNull String message) {
+        return new BuildEvent(Type.WARNING, project, null, message, 0);
+    }
+
+    @NotNull
+    static BuildEvent batchFinished(@NotNull List<BuildResult> results) {
+        return new BuildEvent(Type.BATCH_FINISHED, null, null, null, Collections.emptyList(), Collections.unmodifiableList(results), 0);
+    }
+
+    @NotNull
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The time at which the event happened
+     */
+    @NotNull
+    public Instant getTime() {
+        return time;
+    }
+
+    /**
+     * @return The project the event is about or {@code null} for events which concern the whole batch
+     */
+    @Nullable
+    public Project getProject() {
+        return project;
+    }
+
+    /**
+     * @return The result of the build for {@link Type#PROJECT_FINISHED}, {@link Type#PROJECT_SKIPPED} and {@link Type#PROJECT_FAILED} events, {@code null} otherwise
+     */
+    @Nullable
+    public BuildResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return The line for {@link Type#LOG_LINE} events, a human readable description for {@link Type#WARNING}
+     * and {@link Type#PROJECT_RETRY_SCHEDULED} events, {@code null} otherwise
+     */
+    @Nullable
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The projects in build order for {@link Type#GRAPH_RESOLVED} events, an empty list otherwise
+     */
+    @NotNull
+    public List<Project> getProjects() {
+        return projects;
+    }
+
+    /**
+     * @return The results of all builds in build order for {@link Type#BATCH_FINISHED} events, an empty list otherwise
+     */
+    @NotNull
+    public List<BuildResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return The number of the retry the event belongs to, {@code 0} for the first attempt of a build
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    @Override
+    public String toString() {
+        return getType() + (getProject() == null ? "" : " (" + getProject().getDisplayName() + ")") + (getMessage() == null ? "" : ": " + getMessage());
+    }
+
+    public enum Type {
+        /**
+         * The build order was determined, see {@link #getProjects()}
+         */
+        GRAPH_RESOLVED,
+        /**
+         * All dependencies of the project were built and the project waits for a free worker
+         */
+        PROJECT_QUEUED,
+        PROJECT_STARTED,
+        /**
+         * The build of the project printed a line, see {@link #getMessage()}.
+         * Log lines are dropped if a subscriber cannot keep up, all other events are always delivered.
+         */
+        LOG_LINE,
+        /**
+         * The project was built successfully
+         */
+        PROJECT_FINISHED,
+        /**
+         * The project was not built, e. g. because it was up to date or a dependency failed. See {@link BuildResult#getStatus()}.
+         */
+        PROJECT_SKIPPED,
+        /**
+         * The build of the project failed or timed out
+         */
+        PROJECT_FAILED,
+        /**
+         * The build of the project failed and will be retried, see {@link RetryPolicy}
+         */
+        PROJECT_RETRY_SCHEDULED,
+        /**
+         * Something did not work as expected but the builds go on
+         */
+        WARNING,
+        /**
+         * All builds of the batch finished, see {@link #getResults()}
+         */
+        BATCH_FINISHED
+    }
+}
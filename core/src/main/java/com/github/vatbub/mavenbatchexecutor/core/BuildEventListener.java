@@ -0,0 +1,36 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives the events of the builds, see {@link BuildEventPublisher#addListener(BuildEventListener)}.
+ */
+@FunctionalInterface
+public interface BuildEventListener {
+    /**
+     * Called for every event in the order in which the events happened.
+     * Events are delivered on a background thread, so a slow listener does not slow down the builds.
+     */
+    void onEvent(@NotNull BuildEvent event);
+}
@@ -0,0 +1,329 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Delivers the {@link BuildEvent}s of an {@link Executor} to any number of subscribers.
+ * As a {@link BuildEventListener}, the publisher can also be used to forward the events of other components,
+ * e. g. {@link ProjectList#setEventListener(BuildEventListener)}.
+ * <p>
+ * The subscriber API follows {@code java.util.concurrent.Flow}, so on Java 9 and newer a subscriber can be adapted to a
+ * {@code Flow.Subscriber} (and vice versa) by simply delegating the methods. It is declared here as this library targets Java 8.
+ * <p>
+ * Events are delivered asynchronously: every subscription has its own buffer which is drained on a background thread,
+ * so neither a slow subscriber nor a subscriber which requested no more events slows down the builds.
+ * If the buffer of a subscription is full, further {@link BuildEvent.Type#LOG_LINE} events are dropped for that subscription,
+ * all other events are always delivered. Events are delivered to each subscriber in the order in which they were published
+ * and never concurrently.
+ */
+public class BuildEventPublisher implements BuildEventListener, Closeable {
+    private static final int DEFAULT_BUFFER_CAPACITY = 8192;
+
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ExecutorService dispatcher = Executors.newCachedThreadPool(runnable -> {
+        Thread res = new Thread(runnable, "batch-build-event-dispatcher");
+        res.setDaemon(true);
+        return res;
+    });
+    private final int bufferCapacity;
+    private volatile boolean closed;
+
+    public BuildEventPublisher() {
+        this(DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * @param bufferCapacity The number of events which are buffered per subscription before log lines are dropped
+     */
+    public BuildEventPublisher(int bufferCapacity) {
+        if (bufferCapacity < 1)
+            throw new IllegalArgumentException("bufferCapacity must be at least 1");
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    /**
+     * Adds a subscriber. {@link Subscriber#onSubscribe(Subscription)} is called before this method returns,
+     * events are delivered once the subscriber requested them.
+     */
+    public void subscribe(@NotNull Subscriber subscriber) {
+        subscribe(subscriber, EnumSet.allOf(BuildEvent.Type.class));
+    }
+
+    /**
+     * Adds a subscriber which only receives events of the specified types.
+     * Events which nobody subscribed to, e. g. {@link BuildEvent.Type#LOG_LINE}, are not even created, see {@link #hasSubscribers(BuildEvent.Type)}.
+     */
+    public void subscribe(@NotNull Subscriber subscriber, @NotNull Set<BuildEvent.Type> types) {
+        EventSubscription subscription = new EventSubscription(subscriber, types);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscriber.onComplete();
+            return;
+        }
+        subscriptions.add(subscription);
+    }
+
+    /**
+     * Adds a listener which receives all events.
+     *
+     * @return The subscription of the listener which can be used to remove the listener again
+     */
+    @NotNull
+    public Subscription addListener(@NotNull BuildEventListener listener) {
+        return addListener(listener, EnumSet.allOf(BuildEvent.Type.class));
+    }
+
+    /**
+     * Adds a listener which only receives events of the specified types.
+     *
+     * @return The subscription of the listener which can be used to remove the listener again
+     */
+    @NotNull
+    public Subscription addListener(@NotNull BuildEventListener listener, @NotNull Set<BuildEvent.Type> types) {
+        Subscription[] res = new Subscription[1];
+        subscribe(new Subscriber() {
+            @Override
+            public void onSubscribe(@NotNull Subscription subscription) {
+                res[0] = subscription;
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(@NotNull BuildEvent item) {
+                listener.onEvent(item);
+            }
+
+            @Override
+            public void onError(@NotNull Throwable throwable) {
+                // the subscription of the listener is already removed, so the remaining subscribers get the warning
+                onEvent(BuildEvent.warning(null, "A build event listener failed and was removed: " + throwable));
+            }
+
+            @Override
+            public void onComplete() {
+                // nothing to do
+            }
+        }, types);
+        return res[0];
+    }
+
+    /**
+     * @return {@code true} if anybody subscribed to the events, so that events which are expensive to create can be omitted otherwise
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if anybody subscribed to events of the specified type, so that events which are expensive to create can be omitted otherwise
+     */
+    public boolean hasSubscribers(@NotNull BuildEvent.Type type) {
+        for (EventSubscription subscription : subscriptions) {
+            if (subscription.types.contains(type))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Publishes the specified event to all subscribers. Returns immediately.
+     */
+    @Override
+    public void onEvent(@NotNull BuildEvent event) {
+        if (closed)
+            return;
+        for (EventSubscription subscription : subscriptions)
+            subscription.offer(event);
+    }
+
+    /**
+     * Completes all subscriptions once their buffered events were delivered. Events published afterwards are ignored.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (EventSubscription subscription : subscriptions)
+            subscription.complete();
+        subscriptions.clear();
+        dispatcher.shutdown();
+    }
+
+    /**
+     * Receives events, see {@code java.util.concurrent.Flow.Subscriber}.
+     */
+    public interface Subscriber {
+        void onSubscribe(@NotNull Subscription subscription);
+
+        void onNext(@NotNull BuildEvent item);
+
+        /**
+         * Called if the subscription ended because {@link #onNext(BuildEvent)} threw an exception or an invalid number of events was requested
+         */
+        void onError(@NotNull Throwable throwable);
+
+        /**
+         * Called once the publisher was closed and all events were delivered
+         */
+        void onComplete();
+    }
+
+    /**
+     * Links a {@link Subscriber} to the publisher, see {@code java.util.concurrent.Flow.Subscription}.
+     */
+    public interface Subscription {
+        /**
+         * Adds the specified number of events to the number of events the subscriber is willing to receive.
+         *
+         * @param n The number of additional events to deliver, {@link Long#MAX_VALUE} for an unbounded number of events
+         */
+        void request(long n);
+
+        /**
+         * Stops the delivery of events. Events which are being delivered might still arrive.
+         */
+        void cancel();
+    }
+
+    private class EventSubscription implements Subscription {
+        @NotNull
+        private final Subscriber subscriber;
+        @NotNull
+        private final Set<BuildEvent.Type> types;
+        private final Deque<BuildEvent> buffer = new ArrayDeque<>();
+        // all fields below are guarded by this
+        private long demand;
+        private boolean draining;
+        private boolean cancelled;
+        private boolean completed;
+        private Throwable error;
+
+        EventSubscription(@NotNull Subscriber subscriber, @NotNull Set<BuildEvent.Type> types) {
+            this.subscriber = subscriber;
+            this.types = types.isEmpty() ? EnumSet.noneOf(BuildEvent.Type.class) : EnumSet.copyOf(types);
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (cancelled)
+                return;
+            if (n <= 0) {
+                error = new IllegalArgumentException("The number of requested events must be positive but was " + n);
+                cancelled = true;
+                subscriptions.remove(this);
+                scheduleDrain();
+                return;
+            }
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            scheduleDrain();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            buffer.clear();
+            subscriptions.remove(this);
+        }
+
+        synchronized void offer(@NotNull BuildEvent event) {
+            if (cancelled || completed || !types.contains(event.getType()))
+                return;
+            if (buffer.size() >= bufferCapacity && event.getType() == BuildEvent.Type.LOG_LINE)
+                return;
+            buffer.add(event);
+            scheduleDrain();
+        }
+
+        synchronized void complete() {
+            completed = true;
+            scheduleDrain();
+        }
+
+        // must be called while holding the monitor of this subscription
+        private void scheduleDrain() {
+            if (draining)
+                return;
+            boolean canDeliver = demand > 0 && !buffer.isEmpty();
+            boolean mustComplete = completed && buffer.isEmpty();
+            if (!canDeliver && !mustComplete && error == null)
+                return;
+            draining = true;
+            dispatcher.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                BuildEvent event = null;
+                Throwable failure = null;
+                boolean complete = false;
+                synchronized (this) {
+                    if (error != null) {
+                        failure = error;
+                        error = null;
+                    } else if (cancelled) {
+                        draining = false;
+                        return;
+                    } else if (buffer.isEmpty() && completed) {
+                        cancelled = true;
+                        complete = true;
+                    } else if (buffer.isEmpty() || demand == 0) {
+                        draining = false;
+                        return;
+                    } else {
+                        event = buffer.poll();
+                        if (demand != Long.MAX_VALUE)
+                            demand--;
+                    }
+                }
+
+                // the subscriber is called without holding the monitor, so that it may call request or cancel from any thread
+                if (failure != null) {
+                    subscriber.onError(failure);
+                    continue;
+                }
+                if (complete) {
+                    subscriber.onComplete();
+                    continue;
+                }
+                try {
+                    subscriber.onNext(event);
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        cancel();
+                        error = e;
+                    }
+                }
+            }
+        }
+    }
+}
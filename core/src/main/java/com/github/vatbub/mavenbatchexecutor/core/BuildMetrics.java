@@ -0,0 +1,526 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of a single run of {@link Executor#executeBuilds()}: how long the dependency graph took to resolve, how long each project
+ * waited for a worker and was built, how much it logged, how many builds ran at the same time and how long the critical path was.
+ * The metrics are updated while the builds are running, so they can be exported at any time.
+ * They can be exported in the Prometheus text format (see {@link #toPrometheusText()} and {@link MetricsHttpServer}) and as a JSON summary (see {@link #toJson()}).
+ */
+public class BuildMetrics {
+    private static final String PREFIX = "mavenbatchexecutor_";
+
+    @NotNull
+    private final Instant startTime;
+    private final long startNanos;
+    @Nullable
+    private volatile Instant endTime;
+    @NotNull
+    private volatile List<Project> buildOrder = Collections.emptyList();
+    @NotNull
+    private volatile Duration graphResolutionDuration = Duration.ZERO;
+    @NotNull
+    private volatile Duration pomParseDuration = Duration.ZERO;
+    private volatile long estimatedCriticalPathMillis = -1;
+    private volatile long criticalPathMillis = -1;
+    private final ConcurrentMap<Project, ProjectMetrics> projectMetrics = new ConcurrentHashMap<>();
+    // guarded by this
+    private final List<ConcurrencySample> concurrencyTimeline = new ArrayList<>();
+    private int runningBuilds;
+    private int maxRunningBuilds;
+    private long busyNanos;
+    private long lastConcurrencyChangeNanos;
+
+    BuildMetrics() {
+        this.startTime = Instant.now();
+        this.startNanos = System.nanoTime();
+        this.lastConcurrencyChangeNanos = startNanos;
+    }
+
+    void setBuildOrder(@NotNull List<Project> buildOrder) {
+        this.buildOrder = Collections.unmodifiableList(new ArrayList<>(buildOrder));
+    }
+
+    /**
+     * @param graphResolutionDuration The time it took to determine the projects to build and their order
+     * @param pomParseDuration        The part of {@code graphResolutionDuration} which was spent parsing poms
+     */
+    void setGraphResolution(@NotNull Duration graphResolutionDuration, @NotNull Duration pomParseDuration) {
+        this.graphResolutionDuration = graphResolutionDuration;
+        this.pomParseDuration = pomParseDuration;
+    }
+
+    void setEstimatedCriticalPathMillis(long estimatedCriticalPathMillis) {
+        this.estimatedCriticalPathMillis = estimatedCriticalPathMillis;
+    }
+
+    /**
+     * Notes that a worker started working on a project
+     */
+    synchronized void workerStarted() {
+        updateConcurrency(1);
+    }
+
+    /**
+     * Notes that a worker finished working on a project
+     */
+    synchronized void workerFinished() {
+        updateConcurrency(-1);
+    }
+
+    // must be called while holding the monitor of this object
+    private void updateConcurrency(int delta) {
+        long now = System.nanoTime();
+        busyNanos += runningBuilds * (now - lastConcurrencyChangeNanos);
+        lastConcurrencyChangeNanos = now;
+        runningBuilds += delta;
+        maxRunningBuilds = Math.max(maxRunningBuilds, runningBuilds);
+        concurrencyTimeline.add(new ConcurrencySample(Duration.ofNanos(now - startNanos), runningBuilds));
+    }
+
+    void logLine(@NotNull Project project, @NotNull String line) {
+        ProjectMetrics metrics = getOrCreate(project);
+        metrics.logLines.incrementAndGet();
+        // the line terminator counts as well
+        metrics.logBytes.addAndGet(utf8Length(line) + 1);
+    }
+
+    void addResult(@NotNull BuildResult result) {
+        ProjectMetrics metrics = getOrCreate(result.getProject());
+        metrics.status = result.getStatus();
+        metrics.queueWaitTime = result.getQueueWaitTime();
+        metrics.buildDuration = result.getDuration();
+        metrics.retryCount = result.getRetryCount();
+    }
+
+    /**
+     * Notes that all builds finished and computes the actual critical path
+     */
+    void finish() {
+        Map<Project, Long> finishTimes = new HashMap<>();
+        long longestPath = 0;
+        for (Project project : buildOrder)
+            longestPath = Math.max(longestPath, getPathDuration(project, finishTimes, new HashSet<>()));
+        this.criticalPathMillis = longestPath;
+        synchronized (this) {
+            updateConcurrency(0);
+        }
+        this.endTime = Instant.now();
+    }
+
+    /**
+     * @return The sum of the build durations along the longest chain of dependencies which ends with the specified project
+     */
+    private long getPathDuration(@NotNull Project project, @NotNull Map<Project, Long> pathDurations, @NotNull Set<Project> visiting) {
+        Long res = pathDurations.get(project);
+        if (res != null)
+            return res;
+        ProjectMetrics metrics = projectMetrics.get(project);
+        if (metrics == null || !visiting.add(project))
+            return 0;
+
+        long longestDependencyPath = 0;
+        for (Project dependency : project.getDependencies()) {
+            if (!dependency.equals(project))
+                longestDependencyPath = Math.max(longestDependencyPath, getPathDuration(dependency, pathDurations, visiting));
+        }
+        visiting.remove(project);
+        res = metrics.getBuildDuration().toMillis() + longestDependencyPath;
+        pathDurations.put(project, res);
+        return res;
+    }
+
+    @NotNull
+    private ProjectMetrics getOrCreate(@NotNull Project project) {
+        return projectMetrics.computeIfAbsent(project, ProjectMetrics::new);
+    }
+
+    @NotNull
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return The time at which the last build finished or {@code null} if builds are still running
+     */
+    @Nullable
+    public Instant getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return The time between the start of the run and its end (or now, if builds are still running)
+     */
+    @NotNull
+    public Duration getTotalDuration() {
+        Instant end = getEndTime();
+        return Duration.between(getStartTime(), end == null ? Instant.now() : end);
+    }
+
+    @NotNull
+    public Duration getGraphResolutionDuration() {
+        return graphResolutionDuration;
+    }
+
+    @NotNull
+    public Duration getPomParseDuration() {
+        return pomParseDuration;
+    }
+
+    /**
+     * @return The critical path according to the estimated build durations when the builds were scheduled in milliseconds or {@code -1} if unknown
+     */
+    public long getEstimatedCriticalPathMillis() {
+        return estimatedCriticalPathMillis;
+    }
+
+    /**
+     * @return The sum of the actual build durations along the longest chain of dependencies in milliseconds or {@code -1} if builds are still running.
+     * No run can be faster than this, no matter how many workers are used.
+     */
+    public long getCriticalPathMillis() {
+        return criticalPathMillis;
+    }
+
+    public synchronized int getRunningBuilds() {
+        return runningBuilds;
+    }
+
+    public synchronized int getMaxRunningBuilds() {
+        return maxRunningBuilds;
+    }
+
+    /**
+     * @return The average number of builds which ran at the same time
+     */
+    public synchronized double getAverageRunningBuilds() {
+        long busy = busyNanos + runningBuilds * (System.nanoTime() - lastConcurrencyChangeNanos);
+        long total = getTotalDuration().toNanos();
+        return total <= 0 ? 0 : (double) busy / total;
+    }
+
+    /**
+     * @return The number of running builds after every change, in chronological order
+     */
+    @NotNull
+    public synchronized List<ConcurrencySample> getConcurrencyTimeline() {
+        return new ArrayList<>(concurrencyTimeline);
+    }
+
+    /**
+     * @return The metrics of all projects that started building so far, in build order
+     */
+    @NotNull
+    public List<ProjectMetrics> getProjectMetrics() {
+        List<ProjectMetrics> res = new ArrayList<>(projectMetrics.size());
+        for (Project project : buildOrder) {
+            ProjectMetrics metrics = projectMetrics.get(project);
+            if (metrics != null)
+                res.add(metrics);
+        }
+        return res;
+    }
+
+    /**
+     * @return The metrics in the Prometheus text exposition format
+     */
+    @NotNull
+    public String toPrometheusText() {
+        StringBuilder res = new StringBuilder();
+        appendGauge(res, "batch_duration_seconds", "Duration of the batch so far", seconds(getTotalDuration()));
+        appendGauge(res, "graph_resolution_seconds", "Time spent determining the projects to build and their order", seconds(getGraphResolutionDuration()));
+        appendGauge(res, "pom_parse_seconds", "Time spent reading and parsing poms", seconds(getPomParseDuration()));
+        // the critical paths are omitted as long as they are unknown
+        if (getEstimatedCriticalPathMillis() >= 0)
+            appendGauge(res, "critical_path_estimated_seconds", "Critical path according to the estimated build durations", getEstimatedCriticalPathMillis() / 1000.0);
+        if (getCriticalPathMillis() >= 0)
+            appendGauge(res, "critical_path_seconds", "Sum of the build durations along the longest chain of dependencies", getCriticalPathMillis() / 1000.0);
+        appendGauge(res, "projects", "Number of projects in the batch", buildOrder.size());
+        appendGauge(res, "running_builds", "Number of builds running right now", getRunningBuilds());
+        appendGauge(res, "running_builds_max", "Maximum number of builds which ran at the same time", getMaxRunningBuilds());
+        appendGauge(res, "running_builds_average", "Average number of builds which ran at the same time", getAverageRunningBuilds());
+
+        List<ProjectMetrics> projects = getProjectMetrics();
+        Map<BuildResult.Status, Integer> statusCounts = new EnumMap<>(BuildResult.Status.class);
+        for (ProjectMetrics metrics : projects) {
+            if (metrics.getStatus() != null)
+                statusCounts.merge(metrics.getStatus(), 1, Integer::sum);
+        }
+        appendHeader(res, "builds", "Number of finished builds by status", "gauge");
+        for (BuildResult.Status status : BuildResult.Status.values())
+            res.append(PREFIX).append("builds{status=\"").append(status).append("\"} ").append(statusCounts.getOrDefault(status, 0)).append('\n');
+
+        appendHeader(res, "project_queue_wait_seconds", "Time the project waited for a free worker after its dependencies finished", "gauge");
+        for (ProjectMetrics metrics : projects)
+            appendProjectSample(res, "project_queue_wait_seconds", metrics, seconds(metrics.getQueueWaitTime()));
+        appendHeader(res, "project_build_duration_seconds", "Duration of the build of the project", "gauge");
+        for (ProjectMetrics metrics : projects)
+            appendProjectSample(res, "project_build_duration_seconds", metrics, seconds(metrics.getBuildDuration()));
+        appendHeader(res, "project_retries", "Number of times the build of the project was retried", "gauge");
+        for (ProjectMetrics metrics : projects)
+            appendProjectSample(res, "project_retries", metrics, metrics.getRetryCount());
+        appendHeader(res, "project_log_lines_total", "Number of lines the build of the project printed", "counter");
+        for (ProjectMetrics metrics : projects)
+            appendProjectSample(res, "project_log_lines_total", metrics, metrics.getLogLines());
+        appendHeader(res, "project_log_bytes_total", "Number of bytes (UTF-8) the build of the project printed", "counter");
+        for (ProjectMetrics metrics : projects)
+            appendProjectSample(res, "project_log_bytes_total", metrics, metrics.getLogBytes());
+        return res.toString();
+    }
+
+    /**
+     * @return A summary of the metrics as a JSON object, including the concurrency timeline
+     */
+    @NotNull
+    public String toJson() {
+        StringBuilder res = new StringBuilder("{\n");
+        res.append("  \"startTime\": ");
+        JsonStrings.appendQuoted(res, getStartTime().toString());
+        res.append(",\n  \"endTime\": ");
+        if (getEndTime() == null)
+            res.append("null");
+        else
+            JsonStrings.appendQuoted(res, String.valueOf(getEndTime()));
+        res.append(",\n  \"totalDurationMillis\": ").append(getTotalDuration().toMillis());
+        res.append(",\n  \"graphResolutionMillis\": ").append(getGraphResolutionDuration().toMillis());
+        res.append(",\n  \"pomParseMillis\": ").append(getPomParseDuration().toMillis());
+        res.append(",\n  \"estimatedCriticalPathMillis\": ").append(getEstimatedCriticalPathMillis());
+        res.append(",\n  \"criticalPathMillis\": ").append(getCriticalPathMillis());
+        res.append(",\n  \"maxRunningBuilds\": ").append(getMaxRunningBuilds());
+        res.append(",\n  \"averageRunningBuilds\": ").append(String.format(Locale.ROOT, "%.3f", getAverageRunningBuilds()));
+
+        res.append(",\n  \"projects\": [");
+        boolean first = true;
+        for (ProjectMetrics metrics : getProjectMetrics()) {
+            res.append(first ? "\n" : ",\n").append("    {\"project\": ");
+            JsonStrings.appendQuoted(res, metrics.getProject().getDisplayName());
+            res.append(", \"status\": ");
+            if (metrics.getStatus() == null)
+                res.append("null");
+            else
+                JsonStrings.appendQuoted(res, metrics.getStatus().toString());
+            res.append(", \"queueWaitMillis\": ").append(metrics.getQueueWaitTime().toMillis())
+                    .append(", \"buildMillis\": ").append(metrics.getBuildDuration().toMillis())
+                    .append(", \"retries\": ").append(metrics.getRetryCount())
+                    .append(", \"logLines\": ").append(metrics.getLogLines())
+                    .append(", \"logBytes\": ").append(metrics.getLogBytes()).append('}');
+            first = false;
+        }
+        res.append(first ? "]" : "\n  ]");
+
+        res.append(",\n  \"concurrency\": [");
+        first = true;
+        for (ConcurrencySample sample : getConcurrencyTimeline()) {
+            res.append(first ? "\n" : ",\n").append("    {\"offsetMillis\": ").append(sample.getOffset().toMillis())
+                    .append(", \"runningBuilds\": ").append(sample.getRunningBuilds()).append('}');
+            first = false;
+        }
+        res.append(first ? "]" : "\n  ]");
+        res.append("\n}\n");
+        return res.toString();
+    }
+
+    /**
+     * Writes {@link #toPrometheusText()} to the specified file, e. g. for the textfile collector of the Prometheus node exporter.
+     * The file is replaced atomically, so readers never see a partially written file.
+     */
+    public void writePrometheusText(@NotNull File file) throws IOException {
+        writeAtomically(file, toPrometheusText());
+    }
+
+    /**
+     * Writes {@link #toJson()} to the specified file.
+     */
+    public void writeJson(@NotNull File file) throws IOException {
+        writeAtomically(file, toJson());
+    }
+
+    private static void writeAtomically(@NotNull File file, @NotNull String content) throws IOException {
+        File parentFolder = file.getAbsoluteFile().getParentFile();
+        if (parentFolder != null)
+            Files.createDirectories(parentFolder.toPath());
+        Path tempFile = file.toPath().resolveSibling(file.getName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void appendHeader(@NotNull StringBuilder builder, @NotNull String name, @NotNull String help, @NotNull String type) {
+        builder.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void appendGauge(@NotNull StringBuilder builder, @NotNull String name, @NotNull String help, double value) {
+        appendHeader(builder, name, help, "gauge");
+        builder.append(PREFIX).append(name).append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static void appendProjectSample(@NotNull StringBuilder builder, @NotNull String name, @NotNull ProjectMetrics metrics, double value) {
+        builder.append(PREFIX).append(name).append("{project=\"");
+        String path = metrics.getProject().getDisplayName();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' || c == '"')
+                builder.append('\\').append(c);
+            else if (c == '\n')
+                builder.append("\\n");
+            else
+                builder.append(c);
+        }
+        builder.append("\"} ").append(formatValue(value)).append('\n');
+    }
+
+    @NotNull
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value))
+            return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    private static double seconds(@NotNull Duration duration) {
+        return duration.toMillis() / 1000.0;
+    }
+
+    private static int utf8Length(@NotNull String value) {
+        int res = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80)
+                res += 1;
+            else if (c < 0x800)
+                res += 2;
+            else if (Character.isSurrogate(c))
+                // a surrogate pair is encoded with 4 bytes
+                res += 2;
+            else
+                res += 3;
+        }
+        return res;
+    }
+
+    /**
+     * The metrics of a single project
+     */
+    public static class ProjectMetrics {
+        @NotNull
+        private final Project project;
+        private final AtomicLong logLines = new AtomicLong();
+        private final AtomicLong logBytes = new AtomicLong();
+        @Nullable
+        private volatile BuildResult.Status status;
+        @NotNull
+        private volatile Duration queueWaitTime = Duration.ZERO;
+        @NotNull
+        private volatile Duration buildDuration = Duration.ZERO;
+        private volatile int retryCount;
+
+        private ProjectMetrics(@NotNull Project project) {
+            this.project = project;
+        }
+
+        @NotNull
+        public Project getProject() {
+            return project;
+        }
+
+        /**
+         * @return The status of the build or {@code null} if the build did not finish yet
+         */
+        @Nullable
+        public BuildResult.Status getStatus() {
+            return status;
+        }
+
+        @NotNull
+        public Duration getQueueWaitTime() {
+            return queueWaitTime;
+        }
+
+        @NotNull
+        public Duration getBuildDuration() {
+            return buildDuration;
+        }
+
+        public int getRetryCount() {
+            return retryCount;
+        }
+
+        /**
+         * @return The number of lines the build printed, including all retries
+         */
+        public long getLogLines() {
+            return logLines.get();
+        }
+
+        /**
+         * @return The number of bytes (UTF-8, including line terminators) the build printed, including all retries
+         */
+        public long getLogBytes() {
+            return logBytes.get();
+        }
+    }
+
+    /**
+     * The number of running builds after a build started or finished
+     */
+    public static class ConcurrencySample {
+        @NotNull
+        private final Duration offset;
+        private final int runningBuilds;
+
+        private ConcurrencySample(@NotNull Duration offset, int runningBuilds) {
+            this.offset = offset;
+            this.runningBuilds = runningBuilds;
+        }
+
+        /**
+         * @return The time since the start of the run
+         */
+        @NotNull
+        public Duration getOffset() {
+            return offset;
+        }
+
+        public int getRunningBuilds() {
+            return runningBuilds;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.maven.model.Model;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+/**
+ * A local cache for build outputs which is addressed by the fingerprint of the build inputs (see {@link ProjectFingerprinter}).
+ * As the fingerprint covers the goals, the same project built with different goals gets different entries.
+ * <p>
+ * An entry contains the jars in the {@code target} folders of a project and its modules as well as the artifacts which the build
+ * installed into the local repository. On a hit, those files are restored by copies (or hard links, see {@link #isUseHardLinks()}),
+ * so the project does not need to be built at all.
+ * <p>
+ * The total size of the cache is bounded. If it grows beyond {@link #getMaxSize()}, the least recently used entries are deleted.
+ * <p>
+ * Folder layout of an entry: {@code <key>/project} mirrors the project folder, {@code <key>/repository} mirrors the local repository.
+ */
+public class BuildOutputCache {
+    private static final String PROJECT_FOLDER_NAME = "project";
+    private static final String REPOSITORY_FOLDER_NAME = "repository";
+    private static final String SIZE_FILE_NAME = "size";
+    private static final String LAST_USED_FILE_NAME = "lastUsed";
+
+    @NotNull
+    private final File directory;
+    private final long maxSize;
+    @NotNull
+    private File localRepository;
+    private boolean useHardLinks;
+
+    /**
+     * @param directory The folder which contains the cache entries
+     * @param maxSize   The maximum total size of all entries in bytes
+     */
+    public BuildOutputCache(@NotNull File directory, long maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maxSize must not be negative");
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.localRepository = getDefaultLocalRepository();
+        this.useHardLinks = false;
+    }
+
+    /**
+     * @return The default cache folder which is located in the user home directory
+     */
+    @NotNull
+    public static File getDefaultDirectory() {
+        return new File(System.getProperty("user.home")).toPath().resolve(".mavenbatchexecutor").resolve("outputCache").toFile();
+    }
+
+    /**
+     * @return The default local maven repository ({@code ~/.m2/repository})
+     */
+    @NotNull
+    public static File getDefaultLocalRepository() {
+        return new File(System.getProperty("user.home")).toPath().resolve(".m2").resolve("repository").toFile();
+    }
+
+    @NotNull
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The local repository which installed artifacts are taken from and restored to.
+     * Must match the local repository which maven uses.
+     */
+    @NotNull
+    public File getLocalRepository() {
+        return localRepository;
+    }
+
+    public void setLocalRepository(@NotNull File localRepository) {
+        this.localRepository = localRepository;
+    }
+
+    /**
+     * @return {@code true} if files are restored as hard links which is fast and does not use additional disk space,
+     * {@code false} (default) if they are copied. A hard linked file shares its content with the cache entry, so linked files are made read-only
+     * to protect the entry: a tool which writes to a restored file in place fails instead of corrupting the cache.
+     * Files are copied if the file system does not support hard links.
+     */
+    public boolean isUseHardLinks() {
+        return useHardLinks;
+    }
+
+    public void setUseHardLinks(boolean useHardLinks) {
+        this.useHardLinks = useHardLinks;
+    }
+
+    /**
+     * Restores the outputs of the specified entry.
+     *
+     * @param key           The fingerprint of the build
+     * @param projectFolder The folder of the project to restore the outputs to
+     * @return {@code true} if the entry exists and was restored, {@code false} if the cache does not contain the entry
+     */
+    public boolean restore(@NotNull String key, @NotNull File projectFolder) throws IOException {
+        Path entryPath = getEntryPath(key);
+        if (!Files.isDirectory(entryPath))
+            return false;
+
+        touch(entryPath);
+        restoreTree(entryPath.resolve(PROJECT_FOLDER_NAME), projectFolder.toPath());
+        restoreTree(entryPath.resolve(REPOSITORY_FOLDER_NAME), getLocalRepository().toPath());
+        return true;
+    }
+
+    /**
+     * Stores the outputs of a successful build and evicts the least recently used entries if the cache grew too large.
+     * Only files which were modified after the build started are stored.
+     *
+     * @param key            The fingerprint of the build
+     * @param projectFolder  The folder of the project which was built
+     * @param models         The models of the project and all of its modules. Used to locate the installed artifacts.
+     * @param buildStartTime The time at which the build started in milliseconds since the epoch
+     */
+    public void store(@NotNull String key, @NotNull File projectFolder, @NotNull Collection<Model> models, long buildStartTime) throws IOException {
+        Path entryPath = getEntryPath(key);
+        if (Files.isDirectory(entryPath))
+            return;
+
+        Files.createDirectories(directory.toPath());
+        Path tempPath = Files.createTempDirectory(directory.toPath(), key + ".tmp");
+        try {
+            long size = 0;
+            Path projectPath = projectFolder.toPath();
+            Path repositoryPath = getLocalRepository().toPath();
+            for (Model model : models) {
+                Path moduleFolder = model.getProjectDirectory() == null ? projectPath : model.getProjectDirectory().toPath();
+                size += storeFiles(getJars(moduleFolder.resolve("target")), projectPath, tempPath.resolve(PROJECT_FOLDER_NAME), buildStartTime);
+
+                Path artifactFolder = getArtifactFolder(model);
+                if (artifactFolder != null)
+                    size += storeFiles(listFiles(artifactFolder), repositoryPath, tempPath.resolve(REPOSITORY_FOLDER_NAME), buildStartTime);
+            }
+
+            Files.write(tempPath.resolve(SIZE_FILE_NAME), Long.toString(size).getBytes(StandardCharsets.UTF_8));
+            touch(tempPath);
+            try {
+                Files.move(tempPath, entryPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                if (!Files.isDirectory(entryPath))
+                    throw e;
+                // another build stored the same entry in the meantime
+                FileTrees.deleteRecursively(tempPath);
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            if (Files.exists(tempPath))
+                FileTrees.deleteRecursively(tempPath);
+            throw e;
+        }
+
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used entries until the total size of the cache is at most {@link #getMaxSize()}.
+     */
+    public synchronized void evict() throws IOException {
+        File[] entryFolders = directory.listFiles(file -> file.isDirectory() && !file.getName().contains(".tmp"));
+        if (entryFolders == null)
+            return;
+
+        Map<File, Long> sizes = new HashMap<>(entryFolders.length);
+        Map<File, Long> lastUsedTimes = new HashMap<>(entryFolders.length);
+        long totalSize = 0;
+        for (File entryFolder : entryFolders) {
+            long size = readSize(entryFolder.toPath());
+            sizes.put(entryFolder, size);
+            lastUsedTimes.put(entryFolder, entryFolder.toPath().resolve(LAST_USED_FILE_NAME).toFile().lastModified());
+            totalSize += size;
+        }
+        if (totalSize <= getMaxSize())
+            return;
+
+        Arrays.sort(entryFolders, Comparator.comparing(lastUsedTimes::get));
+        for (File entryFolder : entryFolders) {
+            if (totalSize <= getMaxSize())
+                break;
+            FileTrees.deleteRecursively(entryFolder.toPath());
+            totalSize -= sizes.get(entryFolder);
+        }
+    }
+
+    @NotNull
+    private Path getEntryPath(@NotNull String key) {
+        return directory.toPath().resolve(key);
+    }
+
+    /**
+     * @return The folder in the local repository which contains the artifacts of the specified model or {@code null} if its coordinates are not known
+     */
+    private Path getArtifactFolder(@NotNull Model model) {
+        String groupId = model.getGroupId();
+        String version = model.getVersion();
+        if (groupId == null && model.getParent() != null)
+            groupId = model.getParent().getGroupId();
+        if (version == null && model.getParent() != null)
+            version = model.getParent().getVersion();
+        if (groupId == null || model.getArtifactId() == null || version == null || version.contains("${"))
+            return null;
+        return getLocalRepository().toPath().resolve(groupId.replace('.', '/')).resolve(model.getArtifactId()).resolve(version);
+    }
+
+    @NotNull
+    private static List<Path> getJars(@NotNull Path targetFolder) throws IOException {
+        List<Path> res = new ArrayList<>();
+        for (Path file : listFiles(targetFolder)) {
+            if (file.getFileName().toString().endsWith(".jar"))
+                res.add(file);
+        }
+        return res;
+    }
+
+    @NotNull
+    private static List<Path> listFiles(@NotNull Path folder) throws IOException {
+        List<Path> res = new ArrayList<>();
+        if (!Files.isDirectory(folder))
+            return res;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file))
+                    res.add(file);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Copies the files which were modified after the specified time to the same relative location in the target folder.
+     *
+     * @return The total size of the stored files
+     */
+    private static long storeFiles(@NotNull List<Path> files, @NotNull Path sourceRoot, @NotNull Path targetRoot, long modifiedAfter) throws IOException {
+        long size = 0;
+        for (Path file : files) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (attributes.lastModifiedTime().toMillis() < modifiedAfter || !file.startsWith(sourceRoot))
+                continue;
+            Path target = targetRoot.resolve(sourceRoot.relativize(file).toString());
+            Files.createDirectories(target.getParent());
+            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            size += attributes.size();
+        }
+        return size;
+    }
+
+    private void restoreTree(@NotNull Path sourceRoot, @NotNull Path targetRoot) throws IOException {
+        if (!Files.isDirectory(sourceRoot))
+            return;
+        Files.walkFileTree(sourceRoot, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path target = targetRoot.resolve(sourceRoot.relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                Files.deleteIfExists(target);
+                if (isUseHardLinks()) {
+                    try {
+                        // the link shares the permissions of the cached file
+                        if (!file.toFile().setWritable(false, false))
+                            throw new IOException("Unable to make " + file + " read-only");
+                        Files.createLink(target, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (UnsupportedOperationException | IOException e) {
+                        // e. g. the cache is located on a different file system, fall back to copying
+                    }
+                }
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                // the cached file may be read-only if it was linked before, but a copy belongs to the project alone
+                if (!target.toFile().setWritable(true))
+                    throw new IOException("Unable to make " + target + " writable");
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static long readSize(@NotNull Path entryPath) {
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(entryPath.resolve(SIZE_FILE_NAME)), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void touch(@NotNull Path entryPath) throws IOException {
+        Path lastUsedFile = entryPath.resolve(LAST_USED_FILE_NAME);
+        if (!Files.exists(lastUsedFile))
+            Files.createFile(lastUsedFile);
+        Files.setLastModifiedTime(lastUsedFile, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+}
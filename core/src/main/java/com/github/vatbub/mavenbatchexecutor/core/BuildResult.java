@@ -9,9 +9,9 @@ package com.github.vatbub.mavenbatchexecutor.core;
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
- * 
+ *
  *      http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -26,24 +26,68 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
 
 public class BuildResult {
-    @NotNull
+    @Nullable
+    private Project project;
+    @Nullable
     private InvocationResult invocationResult;
     @Nullable
     private File logOutputFile;
+    @NotNull
+    private Status status;
+    @Nullable
+    private Instant startTime;
+    @Nullable
+    private Instant endTime;
+    @NotNull
+    private Duration queueWaitTime;
+    @Nullable
+    private Exception executionException;
+    @Nullable
+    private Project failedDependency;
+    private int retryCount;
 
+    /**
+     * @deprecated The result does not know its project this way, use {@link #BuildResult(Project, InvocationResult, File)} instead
+     */
+    @Deprecated
     public BuildResult(@NotNull InvocationResult invocationResult, @Nullable File logOutputFile) {
+        this(null, invocationResult, logOutputFile);
+    }
+
+    public BuildResult(@Nullable Project project, @Nullable InvocationResult invocationResult, @Nullable File logOutputFile) {
+        this.project = project;
         this.invocationResult = invocationResult;
         this.logOutputFile = logOutputFile;
+        this.queueWaitTime = Duration.ZERO;
+        this.executionException = invocationResult == null ? null : invocationResult.getExecutionException();
+        this.status = invocationResult != null && invocationResult.getExitCode() == 0 && executionException == null ? Status.SUCCESS : Status.FAILED;
     }
 
-    @NotNull
+    /**
+     * @return The project which was built. Only {@code null} if the result was created by the deprecated {@link #BuildResult(InvocationResult, File)}.
+     */
+    @Nullable
+    public Project getProject() {
+        return project;
+    }
+
+    public void setProject(@Nullable Project project) {
+        this.project = project;
+    }
+
+    /**
+     * @return The result of the maven invocation or {@code null} if maven was not invoked, e. g. because the build could not be set up
+     */
+    @Nullable
     public InvocationResult getInvocationResult() {
         return invocationResult;
     }
 
-    public void setInvocationResult(@NotNull InvocationResult invocationResult) {
+    public void setInvocationResult(@Nullable InvocationResult invocationResult) {
         this.invocationResult = invocationResult;
     }
 
@@ -55,4 +99,149 @@ public class BuildResult {
     public void setLogOutputFile(@Nullable File logOutputFile) {
         this.logOutputFile = logOutputFile;
     }
+
+    @NotNull
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(@NotNull Status status) {
+        this.status = status;
+    }
+
+    /**
+     * @return {@code true} if the build succeeded or was skipped because the project was up to date
+     */
+    public boolean isSuccessful() {
+        return getStatus() == Status.SUCCESS || isSkipped();
+    }
+
+    /**
+     * @return {@code true} if maven was not invoked because the project did not change since its last successful build
+     * or its outputs were restored from the build output cache
+     */
+    public boolean isSkipped() {
+        return getStatus() == Status.UP_TO_DATE || getStatus() == Status.CACHED;
+    }
+
+    /**
+     * @return The exit code of the maven process or {@code -1} if maven was not invoked
+     */
+    public int getExitCode() {
+        return getInvocationResult() == null ? -1 : getInvocationResult().getExitCode();
+    }
+
+    /**
+     * @return The exception which prevented the build from being executed or {@code null} if the build was executed
+     */
+    @Nullable
+    public Exception getExecutionException() {
+        return executionException;
+    }
+
+    public void setExecutionException(@Nullable Exception executionException) {
+        this.executionException = executionException;
+    }
+
+    /**
+     * @return The (transitive) dependency whose failure caused this build to be skipped if the status is {@link Status#DEPENDENCY_FAILED}, {@code null} otherwise
+     */
+    @Nullable
+    public Project getFailedDependency() {
+        return failedDependency;
+    }
+
+    public void setFailedDependency(@Nullable Project failedDependency) {
+        this.failedDependency = failedDependency;
+    }
+
+    /**
+     * @return The number of times the build was retried after it failed, see {@link Executor#getRetryPolicy()}.
+     * The other properties of this result describe the last attempt.
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public void setRetryCount(int retryCount) {
+        this.retryCount = retryCount;
+    }
+
+    /**
+     * @return The time at which the build started or {@code null} if it never started
+     */
+    @Nullable
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(@Nullable Instant startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * @return The time at which the build finished or {@code null} if it never started
+     */
+    @Nullable
+    public Instant getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(@Nullable Instant endTime) {
+        this.endTime = endTime;
+    }
+
+    /**
+     * @return The time between {@link #getStartTime()} and {@link #getEndTime()} or {@link Duration#ZERO} if the build never started
+     */
+    @NotNull
+    public Duration getDuration() {
+        if (getStartTime() == null || getEndTime() == null)
+            return Duration.ZERO;
+        return Duration.between(getStartTime(), getEndTime());
+    }
+
+    /**
+     * @return The time the project waited for a free worker after all of its dependencies had finished building
+     */
+    @NotNull
+    public Duration getQueueWaitTime() {
+        return queueWaitTime;
+    }
+
+    public void setQueueWaitTime(@NotNull Duration queueWaitTime) {
+        this.queueWaitTime = queueWaitTime;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + (getProject() == null ? "unknown project" : getProject().getDisplayName()) + "): " + getStatus() + " in " + getDuration().toMillis() + " ms"
+                + (getRetryCount() > 0 ? " after " + getRetryCount() + " retries" : "");
+    }
+
+    public enum Status {
+        SUCCESS, FAILED,
+        /**
+         * The build was skipped as the project did not change since its last successful build
+         */
+        UP_TO_DATE,
+        /**
+         * The build was skipped as its outputs were restored from the build output cache
+         */
+        CACHED,
+        /**
+         * The build was not executed because a (transitive) dependency failed, see {@link Executor.FailurePolicy#FAIL_AT_END}
+         */
+        DEPENDENCY_FAILED,
+        /**
+         * The build was not executed or was interrupted because another build failed, see {@link Executor.FailurePolicy#FAIL_FAST},
+         * or because the total timeout expired, see {@link Executor#getTotalTimeout()}
+         */
+        CANCELLED,
+        /**
+         * The build was stopped because it took too long or did not print anything for too long, see {@link Executor#getBuildTimeout()}.
+         * The reason is available as {@link #getExecutionException()}.
+         */
+        TIMED_OUT
+    }
 }
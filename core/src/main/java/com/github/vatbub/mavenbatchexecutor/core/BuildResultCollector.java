@@ -0,0 +1,82 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects the results of builds which finish concurrently.
+ * No matter in which order the builds finish, the results are always returned in build order.
+ */
+public class BuildResultCollector {
+    @NotNull
+    private final List<Project> buildOrder;
+    private final ConcurrentMap<Project, BuildResult> results;
+
+    /**
+     * @param buildOrder The order in which the results shall be returned
+     */
+    public BuildResultCollector(@NotNull List<Project> buildOrder) {
+        this.buildOrder = new ArrayList<>(buildOrder);
+        this.results = new ConcurrentHashMap<>(buildOrder.size() * 2);
+    }
+
+    /**
+     * Adds the specified result. If a result for the same project was added before, it is replaced.
+     */
+    public void add(@NotNull BuildResult result) {
+        results.put(result.getProject(), result);
+    }
+
+    @Nullable
+    public BuildResult get(@NotNull Project project) {
+        return results.get(project);
+    }
+
+    public boolean contains(@NotNull Project project) {
+        return results.containsKey(project);
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * @return A snapshot of the results collected so far, in build order
+     */
+    @NotNull
+    public List<BuildResult> getResults() {
+        List<BuildResult> res = new ArrayList<>(results.size());
+        for (Project project : buildOrder) {
+            BuildResult result = results.get(project);
+            if (result != null)
+                res.add(result);
+        }
+        return res;
+    }
+}
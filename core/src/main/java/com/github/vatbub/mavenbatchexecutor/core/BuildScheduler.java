@@ -0,0 +1,592 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Schedules the builds of a {@link ProjectList} on a fixed number of worker threads.
+ * A project is put into the ready queue as soon as the last of its dependencies (see {@link Project#getDependencies()})
+ * has finished building. Idle workers block until a project becomes ready, no polling is involved.
+ * Dependencies which are not part of the scheduled list are ignored.
+ * <p>
+ * If several projects are ready at the same time, the project with the longest remaining critical path is built first,
+ * i. e. the project with the longest chain of estimated build durations through itself and its transitive dependents.
+ * <p>
+ * If a {@link ResourceBudget} is set, a ready project is only started once its {@link ResourceWeight} fits into the resources
+ * left by the running builds. If the project with the highest priority does not fit, the next ready project which fits is started instead,
+ * so the budget is used as fully as possible.
+ * <p>
+ * If a {@link RetryPolicy} is set, a failed project is queued again once its backoff elapsed. Its worker is free for other builds in the meantime.
+ * The dependents of the project stay blocked until the project succeeded or ran out of retries.
+ * <p>
+ * What happens if a build ultimately fails is determined by the {@link Executor.FailurePolicy}.
+ */
+class BuildScheduler {
+    @NotNull
+    private final List<Project> projects;
+    private final int threads;
+    @NotNull
+    private final ProjectBuildTask buildTask;
+    @Nullable
+    private final ResourceBudget resourceBudget;
+    @NotNull
+    private final Function<Project, ResourceWeight> resourceWeights;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition readyOrDone = lock.newCondition();
+    private final Map<Project, Integer> remainingDependencies;
+    private final Map<Project, Set<Project>> dependents;
+    private final PriorityQueue<Project> readyQueue;
+    private final Map<Project, Exception> failures;
+    private final Map<Project, Long> criticalPaths;
+    private final Map<Project, Instant> readyTimes;
+    private final Map<Project, ResourceWeight> admittedWeights;
+    private final Set<Project> pendingProjects;
+    private final Map<Project, Thread> runningThreads;
+    private final Map<Project, Project> skippedProjects;
+    private final Set<Project> cancelledProjects;
+    private final Map<Project, Integer> retryCounts;
+    // projects which wait for their next retry, mapped to the System.nanoTime() at which they become ready again
+    private final Map<Project, Long> delayedRetries;
+    // the projects without dependencies, queued when the builds are started
+    private final List<Project> initiallyReady;
+    @NotNull
+    private Executor.FailurePolicy failurePolicy;
+    @Nullable
+    private RetryPolicy retryPolicy;
+    @Nullable
+    private BuildEventListener eventListener;
+    private boolean cancelled;
+    private int unfinishedProjects;
+    private int runningBuilds;
+    private long usedMemoryInMegabytes;
+    private int usedCpus;
+
+    /**
+     * @param projects          The projects to build. Projects with the same critical path are built in the order of this list.
+     * @param threads           The maximum number of builds to run at the same time
+     * @param estimatedDuration Returns the estimated build duration of a project, used to compute the critical paths
+     * @param buildTask         The task that builds a single project
+     */
+    BuildScheduler(@NotNull List<Project> projects, int threads, @NotNull ToLongFunction<Project> estimatedDuration, @NotNull ProjectBuildTask buildTask) {
+        this(projects, threads, estimatedDuration, buildTask, null, project -> null);
+    }
+
+    /**
+     * @param projects          The projects to build. Projects with the same critical path are built in the order of this list.
+     * @param threads           The maximum number of builds to run at the same time
+     * @param estimatedDuration Returns the estimated build duration of a project, used to compute the critical paths
+     * @param buildTask         The task that builds a single project
+     * @param resourceBudget    The resources all running builds may use together or {@code null} if only the number of threads limits the builds
+     * @param resourceWeights   Returns the resources a build of a project uses. Only used if {@code resourceBudget} is not {@code null}.
+     */
+    BuildScheduler(@NotNull List<Project> projects, int threads, @NotNull ToLongFunction<Project> estimatedDuration, @NotNull ProjectBuildTask buildTask,
+                   @Nullable ResourceBudget resourceBudget, @NotNull Function<Project, ResourceWeight> resourceWeights) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1");
+        this.projects = projects;
+        this.threads = threads;
+        this.buildTask = buildTask;
+        this.resourceBudget = resourceBudget;
+        this.resourceWeights = resourceWeights;
+        this.admittedWeights = new HashMap<>();
+        this.runningThreads = new HashMap<>();
+        this.skippedProjects = new LinkedHashMap<>();
+        this.cancelledProjects = new LinkedHashSet<>();
+        this.retryCounts = new HashMap<>();
+        this.delayedRetries = new LinkedHashMap<>();
+        this.failurePolicy = Executor.FailurePolicy.FAIL_AT_END;
+
+        Map<Project, Integer> listIndex = new HashMap<>(projects.size());
+        for (int i = 0; i < projects.size(); i++)
+            listIndex.putIfAbsent(projects.get(i), i);
+
+        this.remainingDependencies = new HashMap<>(projects.size());
+        this.dependents = new HashMap<>(projects.size());
+        this.failures = new LinkedHashMap<>();
+        this.criticalPaths = new HashMap<>(projects.size());
+        this.readyTimes = new HashMap<>(projects.size());
+        this.readyQueue = new PriorityQueue<>(Math.max(1, projects.size()),
+                Comparator.comparing((Project project) -> criticalPaths.get(project)).reversed().thenComparing(listIndex::get));
+
+        List<Project> initiallyReady = new ArrayList<>();
+        for (Project project : listIndex.keySet()) {
+            Set<Project> dependencies = new HashSet<>();
+            for (Project dependency : project.getDependencies()) {
+                if (!dependency.equals(project) && listIndex.containsKey(dependency))
+                    dependencies.add(dependency);
+            }
+
+            remainingDependencies.put(project, dependencies.size());
+            for (Project dependency : dependencies)
+                dependents.computeIfAbsent(dependency, key -> new HashSet<>()).add(project);
+
+            if (dependencies.isEmpty())
+                initiallyReady.add(project);
+        }
+
+        computeCriticalPaths(initiallyReady, estimatedDuration);
+        this.initiallyReady = initiallyReady;
+        this.pendingProjects = new HashSet<>(listIndex.keySet());
+        this.unfinishedProjects = listIndex.size();
+    }
+
+    @NotNull
+    Executor.FailurePolicy getFailurePolicy() {
+        return failurePolicy;
+    }
+
+    void setFailurePolicy(@NotNull Executor.FailurePolicy failurePolicy) {
+        this.failurePolicy = failurePolicy;
+    }
+
+    @Nullable
+    RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    void setRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @param eventListener Notified when projects are queued or retries are scheduled
+     */
+    void setEventListener(@Nullable BuildEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * @return The number of times the build of the specified project was retried so far
+     */
+    int getRetryCount(@NotNull Project project) {
+        lock.lock();
+        try {
+            return retryCounts.getOrDefault(project, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels all builds which did not start yet and interrupts the running builds, e. g. because the total timeout expired.
+     */
+    void cancel() {
+        lock.lock();
+        try {
+            if (cancelled)
+                return;
+            cancelBuilds();
+            readyOrDone.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if the builds were cancelled, either because a build failed and the failure policy is {@link Executor.FailurePolicy#FAIL_FAST}
+     * or because {@link #cancel()} was called
+     */
+    boolean isCancelled() {
+        lock.lock();
+        try {
+            return cancelled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The projects which were not built because a (transitive) dependency failed, mapped to the failed dependency.
+     * Only used with {@link Executor.FailurePolicy#FAIL_AT_END}.
+     */
+    @NotNull
+    Map<Project, Project> getSkippedProjects() {
+        lock.lock();
+        try {
+            return new LinkedHashMap<>(skippedProjects);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The projects which were not built because the builds were cancelled after a failure.
+     * Only used with {@link Executor.FailurePolicy#FAIL_FAST}. Builds which were interrupted while running are not part of this set.
+     */
+    @NotNull
+    Set<Project> getCancelledProjects() {
+        lock.lock();
+        try {
+            return new LinkedHashSet<>(cancelledProjects);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Computes the critical path of every project by walking the graph in reverse topological order.
+     * Projects which are part of a dependency cycle are never reached and get a critical path of their own duration.
+     */
+    private void computeCriticalPaths(@NotNull List<Project> initiallyReady, @NotNull ToLongFunction<Project> estimatedDuration) {
+        Map<Project, Integer> inDegrees = new HashMap<>(remainingDependencies);
+        List<Project> topologicalOrder = new ArrayList<>(inDegrees.size());
+        Deque<Project> queue = new ArrayDeque<>(initiallyReady);
+        while (!queue.isEmpty()) {
+            Project project = queue.poll();
+            topologicalOrder.add(project);
+            for (Project dependent : dependents.getOrDefault(project, Collections.emptySet())) {
+                if (inDegrees.merge(dependent, -1, Integer::sum) == 0)
+                    queue.add(dependent);
+            }
+        }
+
+        for (Project project : inDegrees.keySet())
+            criticalPaths.put(project, estimatedDuration.applyAsLong(project));
+
+        for (int i = topologicalOrder.size() - 1; i >= 0; i--) {
+            Project project = topologicalOrder.get(i);
+            long longestDependentPath = 0;
+            for (Project dependent : dependents.getOrDefault(project, Collections.emptySet()))
+                longestDependentPath = Math.max(longestDependentPath, criticalPaths.get(dependent));
+            criticalPaths.put(project, estimatedDuration.applyAsLong(project) + longestDependentPath);
+        }
+    }
+
+    /**
+     * @return The estimated duration of the longest chain of builds in the whole graph
+     */
+    long getLongestCriticalPath() {
+        long res = 0;
+        for (long criticalPath : criticalPaths.values())
+            res = Math.max(res, criticalPath);
+        return res;
+    }
+
+    /**
+     * @param project The project to look up
+     * @return The estimated duration of the longest chain of builds which starts with the specified project
+     */
+    long getCriticalPath(@NotNull Project project) {
+        return criticalPaths.getOrDefault(project, 0L);
+    }
+
+    /**
+     * Builds all projects and blocks until every build has finished.
+     *
+     * @return The exceptions thrown by the build task, mapped to the project whose build threw them. Empty if no build task threw an exception.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the builds. Running builds are interrupted as well.
+     */
+    @NotNull
+    Map<Project, Exception> run() throws InterruptedException {
+        lock.lock();
+        try {
+            for (Project project : initiallyReady)
+                markReady(project);
+        } finally {
+            lock.unlock();
+        }
+
+        int workerCount = Math.max(1, Math.min(threads, projects.size()));
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+        for (int i = 0; i < workerCount; i++)
+            workers.execute(this::workerLoop);
+        workers.shutdown();
+
+        try {
+            while (!workers.awaitTermination(1, TimeUnit.DAYS)) {
+                // keep waiting
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            throw e;
+        }
+
+        lock.lock();
+        try {
+            if (unfinishedProjects > 0)
+                throw new IllegalStateException(unfinishedProjects + " project(s) could not be built as their dependencies never finished. Does the dependency graph contain a cycle?");
+            return new LinkedHashMap<>(failures);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void workerLoop() {
+        while (true) {
+            Project project;
+            Instant readyTime;
+            int retryCount;
+            lock.lock();
+            try {
+                while (true) {
+                    markDueRetriesReady();
+                    if (readyQueue.isEmpty()) {
+                        // nothing left to do or nothing can become ready anymore
+                        if (unfinishedProjects == 0 || (runningBuilds == 0 && delayedRetries.isEmpty())) {
+                            readyOrDone.signalAll();
+                            return;
+                        }
+                        awaitChange();
+                        continue;
+                    }
+                    project = pollAdmissible();
+                    if (project != null)
+                        break;
+                    // wait for a running build to release its resources
+                    awaitChange();
+                }
+                readyTime = readyTimes.remove(project);
+                retryCount = retryCounts.getOrDefault(project, 0);
+                pendingProjects.remove(project);
+                runningThreads.put(project, Thread.currentThread());
+                runningBuilds++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            Exception failure = null;
+            boolean successful = false;
+            try {
+                successful = buildTask.build(project, readyTime, retryCount);
+            } catch (Exception e) {
+                failure = e;
+            }
+
+            // the build might have been interrupted because the builds were cancelled
+            Thread.interrupted();
+            markFinished(project, failure, successful);
+        }
+    }
+
+    private void markFinished(@NotNull Project project, Exception failure, boolean successful) {
+        lock.lock();
+        try {
+            runningBuilds--;
+            runningThreads.remove(project);
+            ResourceWeight weight = admittedWeights.remove(project);
+            if (weight != null) {
+                usedMemoryInMegabytes -= weight.getMemoryInMegabytes();
+                usedCpus -= weight.getCpus();
+            }
+
+            // the project is not finished yet if it is retried
+            if (!successful && !cancelled && scheduleRetry(project)) {
+                readyOrDone.signalAll();
+                return;
+            }
+
+            if (failure != null)
+                failures.put(project, failure);
+            unfinishedProjects--;
+
+            if (!successful && !cancelled) {
+                if (getFailurePolicy() == Executor.FailurePolicy.FAIL_FAST)
+                    cancelBuilds();
+                else if (getFailurePolicy() == Executor.FailurePolicy.FAIL_AT_END)
+                    skipDependents(project);
+            }
+
+            if (!cancelled) {
+                for (Project dependent : dependents.getOrDefault(project, Collections.emptySet())) {
+                    int remaining = remainingDependencies.merge(dependent, -1, Integer::sum);
+                    if (remaining == 0 && !skippedProjects.containsKey(dependent))
+                        markReady(dependent);
+                }
+            }
+            readyOrDone.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues the specified failed project again after its backoff if it has retries left.
+     * Must be called while holding the lock.
+     *
+     * @return {@code true} if the project will be retried
+     */
+    private boolean scheduleRetry(@NotNull Project project) {
+        if (retryPolicy == null)
+            return false;
+        int retryCount = retryCounts.getOrDefault(project, 0) + 1;
+        if (retryCount > retryPolicy.getMaxRetries())
+            return false;
+
+        retryCounts.put(project, retryCount);
+        Duration backoff = retryPolicy.getBackoff(retryCount);
+        if (eventListener != null)
+            eventListener.onEvent(BuildEvent.retryScheduled(project, retryCount, "Retrying the build in " + backoff.toMillis() + " ms (retry " + retryCount + " of " + retryPolicy.getMaxRetries() + ")"));
+        delayedRetries.put(project, System.nanoTime() + backoff.toNanos());
+        pendingProjects.add(project);
+        return true;
+    }
+
+    /**
+     * Moves the delayed retries whose backoff elapsed to the ready queue.
+     * Must be called while holding the lock.
+     */
+    private void markDueRetriesReady() {
+        if (delayedRetries.isEmpty())
+            return;
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Project, Long>> iterator = delayedRetries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Project, Long> delayedRetry = iterator.next();
+            if (now - delayedRetry.getValue() >= 0) {
+                iterator.remove();
+                markReady(delayedRetry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Waits until a build finishes or the backoff of the next delayed retry elapsed.
+     * Must be called while holding the lock.
+     */
+    private void awaitChange() throws InterruptedException {
+        if (delayedRetries.isEmpty()) {
+            readyOrDone.await();
+            return;
+        }
+        long nextRetry = Collections.min(delayedRetries.values(), (a, b) -> Long.compare(a - b, 0));
+        readyOrDone.awaitNanos(nextRetry - System.nanoTime());
+    }
+
+    /**
+     * Marks all transitive dependents of the specified failed project as skipped.
+     * Must be called while holding the lock.
+     */
+    private void skipDependents(@NotNull Project failedProject) {
+        Deque<Project> queue = new ArrayDeque<>();
+        queue.add(failedProject);
+        while (!queue.isEmpty()) {
+            for (Project dependent : dependents.getOrDefault(queue.poll(), Collections.emptySet())) {
+                // dependents of a project which has not finished yet cannot have been started
+                if (!pendingProjects.remove(dependent))
+                    continue;
+                skippedProjects.put(dependent, failedProject);
+                unfinishedProjects--;
+                queue.add(dependent);
+            }
+        }
+    }
+
+    /**
+     * Cancels all builds which did not start yet and interrupts the running builds.
+     * Must be called while holding the lock.
+     */
+    private void cancelBuilds() {
+        cancelled = true;
+        readyQueue.clear();
+        readyTimes.clear();
+        delayedRetries.clear();
+        cancelledProjects.addAll(pendingProjects);
+        unfinishedProjects -= pendingProjects.size();
+        pendingProjects.clear();
+        for (Thread thread : runningThreads.values()) {
+            if (thread != Thread.currentThread())
+                thread.interrupt();
+        }
+    }
+
+    /**
+     * Removes the ready project with the highest priority whose resources are available from the ready queue and reserves its resources.
+     * Must be called while holding the lock.
+     *
+     * @return The project to build next or {@code null} if no ready project fits into the remaining budget
+     */
+    private Project pollAdmissible() {
+        if (resourceBudget == null)
+            return readyQueue.poll();
+
+        List<Project> skippedProjects = new ArrayList<>();
+        Project res = null;
+        while (!readyQueue.isEmpty()) {
+            Project project = readyQueue.poll();
+            if (tryAdmit(project)) {
+                res = project;
+                break;
+            }
+            skippedProjects.add(project);
+        }
+        readyQueue.addAll(skippedProjects);
+        return res;
+    }
+
+    /**
+     * Reserves the resources for the build of the specified project if they are available.
+     * Must be called while holding the lock.
+     *
+     * @return {@code true} if the project may be built now
+     */
+    private boolean tryAdmit(@NotNull Project project) {
+        if (resourceBudget == null)
+            return true;
+        ResourceWeight weight = resourceWeights.apply(project);
+        if (weight == null)
+            return true;
+        // a build which does not fit into the whole budget may still run on its own
+        if (runningBuilds > 0 && !resourceBudget.fits(usedMemoryInMegabytes, usedCpus, weight))
+            return false;
+
+        admittedWeights.put(project, weight);
+        usedMemoryInMegabytes += weight.getMemoryInMegabytes();
+        usedCpus += weight.getCpus();
+        return true;
+    }
+
+    // must be called while holding the lock
+    private void markReady(@NotNull Project project) {
+        readyTimes.put(project, Instant.now());
+        readyQueue.add(project);
+        if (eventListener != null)
+            eventListener.onEvent(BuildEvent.projectQueued(project, retryCounts.getOrDefault(project, 0)));
+    }
+
+    @FunctionalInterface
+    interface ProjectBuildTask {
+        /**
+         * @param project    The project to build
+         * @param readyTime  The time at which the last dependency of the project finished building or at which the backoff before the retry elapsed
+         * @param retryCount The number of times the build was retried before, {@code 0} for the first attempt
+         * @return {@code true} if the build was successful
+         */
+        boolean build(@NotNull Project project, @NotNull Instant readyTime, int retryCount) throws Exception;
+    }
+}
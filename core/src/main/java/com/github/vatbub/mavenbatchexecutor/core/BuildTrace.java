@@ -0,0 +1,223 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records when each build ran on which worker and writes the timeline in the trace event format
+ * which can be opened in {@code chrome://tracing} or the Perfetto UI.
+ * <ul>
+ * <li>Every build (and every retry) is a span on the lane of the worker that ran it.</li>
+ * <li>The time a project waited for a free worker after its dependencies had finished is shown as an async span in the "queue" category.</li>
+ * <li>Every dependency ({@link Project#getDependencies()}) is an arrow from the end of the build of the dependency
+ * to the start of the build of the dependent.</li>
+ * </ul>
+ */
+class BuildTrace {
+    private static final int PROCESS_ID = 1;
+
+    @NotNull
+    private final Instant startTime;
+    private final ConcurrentMap<Thread, Integer> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger laneCount = new AtomicInteger();
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+
+    BuildTrace(@NotNull Instant startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * Records a finished build which ran on the calling thread.
+     *
+     * @param result    The result of the build. Builds which never started are ignored.
+     * @param readyTime The time at which the project was ready to be built
+     */
+    void record(@NotNull BuildResult result, @NotNull Instant readyTime) {
+        if (result.getStartTime() == null || result.getEndTime() == null)
+            return;
+        int lane = lanes.computeIfAbsent(Thread.currentThread(), thread -> laneCount.incrementAndGet());
+        spans.add(new Span(result.getProject(), lane, readyTime, result.getStartTime(), result.getEndTime(), result.getStatus(), result.getRetryCount()));
+    }
+
+    /**
+     * Writes the trace to the specified file. The file is replaced atomically.
+     *
+     * @param buildOrder The projects of the run, used to name the spans consistently
+     */
+    void write(@NotNull File file, @NotNull List<Project> buildOrder) throws IOException {
+        List<Span> sortedSpans = new ArrayList<>(spans);
+        sortedSpans.sort(Comparator.comparing((Span span) -> span.startTime));
+        // the first and the last attempt of each project, the arrows start at the last attempt of the dependency and end at the first attempt of the dependent
+        Map<Project, Span> firstSpans = new HashMap<>();
+        Map<Project, Span> lastSpans = new HashMap<>();
+        for (Span span : sortedSpans) {
+            firstSpans.putIfAbsent(span.project, span);
+            lastSpans.put(span.project, span);
+        }
+
+        List<String> events = new ArrayList<>();
+        events.add(metadataEvent("process_name", 0, "Workers"));
+        for (int lane : new TreeSet<>(lanes.values())) {
+            events.add(metadataEvent("thread_name", lane, "Worker " + lane));
+            events.add(metadataEvent("thread_sort_index", lane, lane));
+        }
+
+        int nextId = 1;
+        for (Span span : sortedSpans) {
+            String name = getName(span.project);
+            StringBuilder event = new StringBuilder("{\"ph\":\"X\",\"cat\":\"build\",\"name\":");
+            JsonStrings.appendQuoted(event, span.retryCount > 0 ? name + " (retry " + span.retryCount + ")" : name);
+            appendPosition(event, span.lane, span.startTime);
+            event.append(",\"dur\":").append(micros(span.startTime, span.endTime));
+            event.append(",\"args\":{\"project\":");
+            JsonStrings.appendQuoted(event, span.project.getDisplayName());
+            event.append(",\"status\":\"").append(span.status).append("\",\"queueWaitMs\":").append(Duration.between(span.readyTime, span.startTime).toMillis()).append("}}");
+            events.add(event.toString());
+
+            if (span.startTime.isAfter(span.readyTime)) {
+                int id = nextId++;
+                events.add(queueEvent("b", id, name, span.lane, span.readyTime));
+                events.add(queueEvent("e", id, name, span.lane, span.startTime));
+            }
+        }
+
+        for (Project project : buildOrder) {
+            Span dependentSpan = firstSpans.get(project);
+            if (dependentSpan == null)
+                continue;
+            for (Project dependency : project.getDependencies()) {
+                Span dependencySpan = lastSpans.get(dependency);
+                if (dependencySpan == null || dependency.equals(project))
+                    continue;
+                int id = nextId++;
+                // a flow start binds to the slice which encloses its timestamp, so it must lie within the span of the dependency
+                Instant flowStart = dependencySpan.endTime.minusNanos(1000).isBefore(dependencySpan.startTime) ? dependencySpan.startTime : dependencySpan.endTime.minusNanos(1000);
+                String flowName = getName(dependencySpan.project) + " -> " + getName(project);
+                events.add(flowEvent("s", id, flowName, dependencySpan.lane, flowStart));
+                events.add(flowEvent("f", id, flowName, dependentSpan.lane, dependentSpan.startTime));
+            }
+        }
+
+        File parentFolder = file.getAbsoluteFile().getParentFile();
+        if (parentFolder != null)
+            Files.createDirectories(parentFolder.toPath());
+        Path tempFile = file.toPath().resolveSibling(file.getName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+            for (int i = 0; i < events.size(); i++) {
+                writer.write(events.get(i));
+                writer.write(i == events.size() - 1 ? "\n" : ",\n");
+            }
+            writer.write("]}\n");
+        }
+        Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void appendPosition(@NotNull StringBuilder event, int lane, @NotNull Instant time) {
+        event.append(",\"pid\":").append(PROCESS_ID).append(",\"tid\":").append(lane).append(",\"ts\":").append(micros(startTime, time));
+    }
+
+    @NotNull
+    private String queueEvent(@NotNull String phase, int id, @NotNull String name, int lane, @NotNull Instant time) {
+        StringBuilder res = new StringBuilder("{\"ph\":\"").append(phase).append("\",\"cat\":\"queue\",\"name\":");
+        JsonStrings.appendQuoted(res, name + " waiting for a worker");
+        res.append(",\"id\":").append(id);
+        appendPosition(res, lane, time);
+        return res.append("}").toString();
+    }
+
+    @NotNull
+    private String flowEvent(@NotNull String phase, int id, @NotNull String name, int lane, @NotNull Instant time) {
+        StringBuilder res = new StringBuilder("{\"ph\":\"").append(phase).append("\",\"cat\":\"dependency\",\"name\":");
+        JsonStrings.appendQuoted(res, name);
+        res.append(",\"id\":").append(id);
+        // bind the end of the arrow to the slice which starts at its timestamp rather than the one enclosing it
+        if (phase.equals("f"))
+            res.append(",\"bp\":\"e\"");
+        appendPosition(res, lane, time);
+        return res.append("}").toString();
+    }
+
+    @NotNull
+    private static String metadataEvent(@NotNull String name, int lane, @NotNull Object value) {
+        StringBuilder res = new StringBuilder("{\"ph\":\"M\",\"name\":\"").append(name).append("\",\"pid\":").append(PROCESS_ID)
+                .append(",\"tid\":").append(lane).append(",\"args\":{");
+        if (value instanceof String) {
+            res.append("\"name\":");
+            JsonStrings.appendQuoted(res, (String) value);
+        } else {
+            res.append("\"sort_index\":").append(value);
+        }
+        return res.append("}}").toString();
+    }
+
+    @NotNull
+    private static String getName(@NotNull Project project) {
+        String name = project.getProjectFolder().getName();
+        return project instanceof StageProject ? name + " [" + ((StageProject) project).getStageName() + "]" : name;
+    }
+
+    private static long micros(@NotNull Instant from, @NotNull Instant to) {
+        return Duration.between(from, to).toNanos() / 1000;
+    }
+
+    private static class Span {
+        @NotNull
+        private final Project project;
+        private final int lane;
+        @NotNull
+        private final Instant readyTime;
+        @NotNull
+        private final Instant startTime;
+        @NotNull
+        private final Instant endTime;
+        @NotNull
+        private final BuildResult.Status status;
+        private final int retryCount;
+
+        Span(@NotNull Project project, int lane, @NotNull Instant readyTime, @NotNull Instant startTime, @NotNull Instant endTime, @NotNull BuildResult.Status status, int retryCount) {
+            this.project = project;
+            this.lane = lane;
+            this.readyTime = readyTime;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.status = status;
+            this.retryCount = retryCount;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stops builds which take too long or which did not print anything for too long (e. g. because a test fork hangs).
+ * All builds are checked by a single background thread. Additionally, a deadline for the whole run can be specified
+ * after which all running builds are stopped.
+ */
+class BuildWatchdog implements Closeable {
+    private static final long CHECK_INTERVAL_MILLIS = 250;
+
+    private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+    @Nullable
+    private final Duration totalTimeout;
+    private final long totalDeadlineNanos;
+    @NotNull
+    private final Runnable totalTimeoutAction;
+    @NotNull
+    private final BuildEventListener eventListener;
+    private volatile boolean totalTimeoutExpired;
+    @NotNull
+    private final Thread watchdogThread;
+
+    /**
+     * @param totalTimeout       The maximum duration of the whole run or {@code null} for no limit
+     * @param totalTimeoutAction Called once when the total timeout expires, before the running builds are stopped.
+     *                           Used to prevent further builds from starting.
+     * @param eventListener      Notified when builds are stopped
+     */
+    BuildWatchdog(@Nullable Duration totalTimeout, @NotNull Runnable totalTimeoutAction, @NotNull BuildEventListener eventListener) {
+        this.totalTimeout = totalTimeout;
+        this.eventListener = eventListener;
+        this.totalDeadlineNanos = totalTimeout == null ? 0 : System.nanoTime() + totalTimeout.toNanos();
+        this.totalTimeoutAction = totalTimeoutAction;
+        this.watchdogThread = new Thread(this::watchdogLoop, "batch-build-watchdog");
+        this.watchdogThread.setDaemon(true);
+        this.watchdogThread.start();
+    }
+
+    /**
+     * Starts watching a build. The returned watch must be closed when the build finished.
+     *
+     * @param project        The project which is built
+     * @param timeout        The maximum duration of the build or {@code null} for no limit
+     * @param silenceTimeout The maximum time between two lines of output or {@code null} for no limit, see {@link Watch#touch()}
+     * @param killAction     Stops the build. Called on the watchdog thread and therefore must not block for long.
+     * @return The watch of the build
+     */
+    @NotNull
+    Watch watch(@NotNull Project project, @Nullable Duration timeout, @Nullable Duration silenceTimeout, @NotNull Runnable killAction) {
+        Watch res = new Watch(project, timeout, silenceTimeout, killAction);
+        watches.add(res);
+        // the total timeout might have expired while the build was being set up
+        if (totalTimeoutExpired)
+            res.expire("The total timeout of " + totalTimeout + " expired");
+        return res;
+    }
+
+    /**
+     * @return {@code true} if the total timeout expired and all builds were stopped
+     */
+    boolean isTotalTimeoutExpired() {
+        return totalTimeoutExpired;
+    }
+
+    @Override
+    public void close() {
+        watchdogThread.interrupt();
+    }
+
+    private void watchdogLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            if (totalTimeout != null && !totalTimeoutExpired && now - totalDeadlineNanos >= 0) {
+                totalTimeoutExpired = true;
+                eventListener.onEvent(BuildEvent.warning(null, "The total timeout of " + totalTimeout + " expired, stopping all builds"));
+                totalTimeoutAction.run();
+                for (Watch watch : watches)
+                    watch.expire("The total timeout of " + totalTimeout + " expired");
+            }
+
+            for (Watch watch : watches)
+                watch.check(now);
+
+            try {
+                Thread.sleep(CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * The watch of a single build.
+     */
+    class Watch implements Closeable {
+        @NotNull
+        private final Project project;
+        @Nullable
+        private final Duration timeout;
+        @Nullable
+        private final Duration silenceTimeout;
+        @NotNull
+        private final Runnable killAction;
+        private final long startNanos;
+        private volatile long lastOutputNanos;
+        @Nullable
+        private volatile String timeoutReason;
+
+        private Watch(@NotNull Project project, @Nullable Duration timeout, @Nullable Duration silenceTimeout, @NotNull Runnable killAction) {
+            this.project = project;
+            this.timeout = timeout;
+            this.silenceTimeout = silenceTimeout;
+            this.killAction = killAction;
+            this.startNanos = System.nanoTime();
+            this.lastOutputNanos = startNanos;
+        }
+
+        /**
+         * Notes that the build printed something, which resets the silence timeout.
+         */
+        void touch() {
+            lastOutputNanos = System.nanoTime();
+        }
+
+        /**
+         * @return {@code true} if the build was stopped because it timed out
+         */
+        boolean isTimedOut() {
+            return timeoutReason != null;
+        }
+
+        /**
+         * @return Why the build was stopped or {@code null} if it did not time out
+         */
+        @Nullable
+        String getTimeoutReason() {
+            return timeoutReason;
+        }
+
+        /**
+         * Stops watching the build.
+         */
+        @Override
+        public void close() {
+            watches.remove(this);
+        }
+
+        private void check(long now) {
+            if (timeout != null && now - startNanos >= timeout.toNanos())
+                expire("The build did not finish within " + timeout);
+            else if (silenceTimeout != null && now - lastOutputNanos >= silenceTimeout.toNanos())
+                expire("The build did not print anything for " + silenceTimeout);
+        }
+
+        private synchronized void expire(@NotNull String reason) {
+            if (timeoutReason != null)
+                return;
+            timeoutReason = reason;
+            eventListener.onEvent(BuildEvent.warning(project, reason + ", stopping it"));
+            watches.remove(this);
+            killAction.run();
+        }
+    }
+}
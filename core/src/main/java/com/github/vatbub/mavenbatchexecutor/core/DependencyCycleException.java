@@ -0,0 +1,59 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown if the projects of a {@link ProjectList} cannot be ordered because their dependencies form a cycle.
+ */
+public class DependencyCycleException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    @NotNull
+    private final List<Project> cycle;
+    @NotNull
+    private final List<Project> unorderedProjects;
+
+    /**
+     * @param cycle             The projects which form the cycle. Each project depends on the next one, the last project depends on the first one.
+     * @param unorderedProjects All projects which could not be ordered, i. e. the projects of the cycle and all projects that depend on them.
+     */
+    public DependencyCycleException(@NotNull List<Project> cycle, @NotNull List<Project> unorderedProjects) {
+        super("The dependencies of the following projects form a cycle: " + cycle.stream().map(Project::toString).collect(Collectors.joining(" -> ")) + " -> " + (cycle.isEmpty() ? "" : cycle.get(0)));
+        this.cycle = Collections.unmodifiableList(cycle);
+        this.unorderedProjects = Collections.unmodifiableList(unorderedProjects);
+    }
+
+    @NotNull
+    public List<Project> getCycle() {
+        return cycle;
+    }
+
+    @NotNull
+    public List<Project> getUnorderedProjects() {
+        return unorderedProjects;
+    }
+}
@@ -21,22 +21,34 @@ package com.github.vatbub.mavenbatchexecutor.core;
  */
 
 
+import org.apache.maven.model.Model;
 import org.apache.maven.shared.invoker.*;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToLongFunction;
 
 public class Executor {
     @NotNull
     private ProjectList projectList;
     private boolean smartOrder;
+    private boolean moduleGranularity;
+    @Nullable
+    private List<List<String>> pipelineStages;
+    private int artifactStage = -1;
     @NotNull
     private List<String> mavenGoals;
     private boolean executeBuildsInParallel;
@@ -44,6 +56,54 @@ public class Executor {
     private OutputSetting outputSetting;
     @Nullable
     private String mavenHome;
+    private int threads;
+    @Nullable
+    private File buildDurationStoreFile;
+    @NotNull
+    private File logDirectory;
+    private int logRetention;
+    @NotNull
+    private BuildBackend backend;
+    private boolean incrementalBuild;
+    @NotNull
+    private File fingerprintStoreFile;
+    @Nullable
+    private GitChangeDetector changeDetector;
+    @Nullable
+    private File revisionStoreFile;
+    private boolean recordRevisions;
+    @Nullable
+    private BuildOutputCache buildOutputCache;
+    @Nullable
+    private ResourceBudget resourceBudget;
+    @NotNull
+    private Map<Project, ResourceWeight> resourceWeights;
+    @NotNull
+    private ResourceWeight defaultResourceWeight;
+    @Nullable
+    private File resourceWeightStoreFile;
+    @NotNull
+    private FailurePolicy failurePolicy;
+    @Nullable
+    private Duration buildTimeout;
+    @NotNull
+    private Map<Project, Duration> buildTimeouts;
+    @Nullable
+    private Duration silenceTimeout;
+    @Nullable
+    private Duration totalTimeout;
+    @Nullable
+    private RetryPolicy retryPolicy;
+    @NotNull
+    private final BuildEventPublisher eventPublisher;
+    @Nullable
+    private volatile BuildMetrics metrics;
+    @Nullable
+    private File metricsFile;
+    @Nullable
+    private File metricsSummaryFile;
+    @Nullable
+    private File traceFile;
 
     public Executor(@NotNull ProjectList projectList) {
         this.projectList = projectList;
@@ -51,6 +111,28 @@ public class Executor {
         this.mavenGoals = Collections.singletonList("install");
         this.executeBuildsInParallel = false;
         this.outputSetting = OutputSetting.TO_FILE;
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.buildDurationStoreFile = BuildDurationStore.getDefaultStoreFile();
+        this.logDirectory = LogDirectory.getDefaultDirectory();
+        this.logRetention = 10;
+        this.backend = new InvokerBackend();
+        this.incrementalBuild = false;
+        this.fingerprintStoreFile = FingerprintStore.getDefaultStoreFile();
+        this.revisionStoreFile = RevisionStore.getDefaultStoreFile();
+        this.resourceWeights = new HashMap<>();
+        this.defaultResourceWeight = new ResourceWeight(1024, 1);
+        this.resourceWeightStoreFile = ResourceWeightStore.getDefaultStoreFile();
+        this.failurePolicy = FailurePolicy.FAIL_AT_END;
+        this.buildTimeouts = new HashMap<>();
+        this.eventPublisher = new BuildEventPublisher();
+    }
+
+    /**
+     * @return The publisher of the events of all builds started by this executor. Subscribe to it to follow the progress of the builds.
+     */
+    @NotNull
+    public BuildEventPublisher getEventPublisher() {
+        return eventPublisher;
     }
 
     @NotNull
@@ -70,6 +152,19 @@ public class Executor {
         this.smartOrder = smartOrder;
     }
 
+    /**
+     * @return {@code true} if every module of a multi-module project is built on its own (see {@link ProjectList#getModules()}),
+     * {@code false} (default) if every project is built as a whole.
+     * Modules are built with {@code -pl <module>} from the root of their project, so the goals should install the artifacts.
+     */
+    public boolean isModuleGranularity() {
+        return moduleGranularity;
+    }
+
+    public void setModuleGranularity(boolean moduleGranularity) {
+        this.moduleGranularity = moduleGranularity;
+    }
+
     @NotNull
     public List<String> getMavenGoals() {
         return mavenGoals;
@@ -87,6 +182,33 @@ public class Executor {
         this.executeBuildsInParallel = executeBuildsInParallel;
     }
 
+    /**
+     * @return The maximum number of builds which are executed at the same time if {@link #isExecuteBuildsInParallel()} is {@code true}.
+     * Defaults to the number of available processors.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1");
+        this.threads = threads;
+    }
+
+    /**
+     * @return The file in which the build durations of past runs are stored. Used to build the projects with the longest critical path first.
+     * {@code null} if build durations shall not be recorded.
+     */
+    @Nullable
+    public File getBuildDurationStoreFile() {
+        return buildDurationStoreFile;
+    }
+
+    public void setBuildDurationStoreFile(@Nullable File buildDurationStoreFile) {
+        this.buildDurationStoreFile = buildDurationStoreFile;
+    }
+
     @NotNull
     public OutputSetting getOutputSetting() {
         return outputSetting;
@@ -96,86 +218,764 @@ public class Executor {
         this.outputSetting = outputSetting;
     }
 
+    /**
+     * @return The central folder for compressed build logs if {@link #getOutputSetting()} is {@link OutputSetting#TO_COMPRESSED_FILE}.
+     * Each run creates its own subfolder in this folder.
+     */
+    @NotNull
+    public File getLogDirectory() {
+        return logDirectory;
+    }
+
+    public void setLogDirectory(@NotNull File logDirectory) {
+        this.logDirectory = logDirectory;
+    }
+
+    /**
+     * @return The number of runs whose compressed logs are kept in {@link #getLogDirectory()}. Logs of older runs are deleted.
+     */
+    public int getLogRetention() {
+        return logRetention;
+    }
+
+    public void setLogRetention(int logRetention) {
+        if (logRetention < 1)
+            throw new IllegalArgumentException("logRetention must be at least 1");
+        this.logRetention = logRetention;
+    }
+
+    /**
+     * @return {@code true} if projects whose inputs did not change since their last successful build shall be skipped.
+     * The inputs of a project are its files (except for the {@code target} folder), the maven goals and the inputs of its upstream projects.
+     * See {@link ProjectFingerprinter}.
+     */
+    public boolean isIncrementalBuild() {
+        return incrementalBuild;
+    }
+
+    public void setIncrementalBuild(boolean incrementalBuild) {
+        this.incrementalBuild = incrementalBuild;
+    }
+
+    /**
+     * @return The file in which the fingerprints of the last successful builds are stored if {@link #isIncrementalBuild()} is {@code true}
+     */
+    @NotNull
+    public File getFingerprintStoreFile() {
+        return fingerprintStoreFile;
+    }
+
+    public void setFingerprintStoreFile(@NotNull File fingerprintStoreFile) {
+        this.fingerprintStoreFile = fingerprintStoreFile;
+    }
+
+    /**
+     * @return If not {@code null}, only the projects which contain changes according to this detector and their (transitive) dependents are built.
+     * The dependency graph is always resolved in that case, regardless of {@link #isSmartOrder()}.
+     */
+    @Nullable
+    public GitChangeDetector getChangeDetector() {
+        return changeDetector;
+    }
+
+    public void setChangeDetector(@Nullable GitChangeDetector changeDetector) {
+        this.changeDetector = changeDetector;
+    }
+
+    /**
+     * @return The file in which the git revision of the last successful build of each project is stored.
+     * Used by a {@link GitChangeDetector} without a revision range. {@code null} if revisions shall not be recorded.
+     * Revisions are only recorded in runs with a {@link #getChangeDetector()} unless {@link #isRecordRevisions()} is {@code true}.
+     */
+    @Nullable
+    public File getRevisionStoreFile() {
+        return revisionStoreFile;
+    }
+
+    public void setRevisionStoreFile(@Nullable File revisionStoreFile) {
+        this.revisionStoreFile = revisionStoreFile;
+    }
+
+    /**
+     * @return {@code true} if the revisions of successful builds are recorded in runs without a {@link #getChangeDetector()} as well,
+     * so that a later run with a change detector only builds the changes since then. {@code false} (default) to not invoke git in such runs.
+     */
+    public boolean isRecordRevisions() {
+        return recordRevisions;
+    }
+
+    public void setRecordRevisions(boolean recordRevisions) {
+        this.recordRevisions = recordRevisions;
+    }
+
+    /**
+     * @return The cache from which the outputs of projects are restored instead of building them if the inputs of a project were built before.
+     * Also caches the outputs of successful builds. {@code null} (default) if build outputs shall not be cached.
+     */
+    @Nullable
+    public BuildOutputCache getBuildOutputCache() {
+        return buildOutputCache;
+    }
+
+    public void setBuildOutputCache(@Nullable BuildOutputCache buildOutputCache) {
+        this.buildOutputCache = buildOutputCache;
+    }
+
+    /**
+     * @return The memory and cpus which the builds running in parallel may use together or {@code null} (default) if only {@link #getThreads()} limits the parallel builds.
+     * The budget only decides when a build may start, the builds themselves run unchanged. See {@link #getResourceWeights()}.
+     */
+    @Nullable
+    public ResourceBudget getResourceBudget() {
+        return resourceBudget;
+    }
+
+    public void setResourceBudget(@Nullable ResourceBudget resourceBudget) {
+        this.resourceBudget = resourceBudget;
+    }
+
+    /**
+     * @return The configured weights of the projects. Projects without a configured weight use the peak memory usage of their
+     * last successful build (see {@link #getResourceWeightStoreFile()}) or {@link #getDefaultResourceWeight()} if that is unknown.
+     * The stages and modules of a project use the weight of the project.
+     */
+    @NotNull
+    public Map<Project, ResourceWeight> getResourceWeights() {
+        return resourceWeights;
+    }
+
+    public void setResourceWeights(@NotNull Map<Project, ResourceWeight> resourceWeights) {
+        this.resourceWeights = resourceWeights;
+    }
+
+    /**
+     * @return The weight of projects which neither have a configured nor a learned weight
+     */
+    @NotNull
+    public ResourceWeight getDefaultResourceWeight() {
+        return defaultResourceWeight;
+    }
+
+    public void setDefaultResourceWeight(@NotNull ResourceWeight defaultResourceWeight) {
+        this.defaultResourceWeight = defaultResourceWeight;
+    }
+
+    /**
+     * @return The file in which the peak memory usage of each project is stored if a {@link #getResourceBudget()} is set.
+     * The memory usage is only measured on Linux. {@code null} if the memory usage shall not be learned.
+     * Modules which are built at the same time from the same reactor cannot be told apart, each of them is assigned the largest usage among them.
+     */
+    @Nullable
+    public File getResourceWeightStoreFile() {
+        return resourceWeightStoreFile;
+    }
+
+    public void setResourceWeightStoreFile(@Nullable File resourceWeightStoreFile) {
+        this.resourceWeightStoreFile = resourceWeightStoreFile;
+    }
+
+    /**
+     * @return What happens if a build fails. Defaults to {@link FailurePolicy#FAIL_AT_END}.
+     */
+    @NotNull
+    public FailurePolicy getFailurePolicy() {
+        return failurePolicy;
+    }
+
+    public void setFailurePolicy(@NotNull FailurePolicy failurePolicy) {
+        this.failurePolicy = failurePolicy;
+    }
+
+    /**
+     * @return The maximum duration of a single build or {@code null} (default) for no limit.
+     * Builds which take longer are stopped and reported as {@link BuildResult.Status#TIMED_OUT}.
+     * Can be overridden per project using {@link #getBuildTimeouts()}.
+     */
+    @Nullable
+    public Duration getBuildTimeout() {
+        return buildTimeout;
+    }
+
+    public void setBuildTimeout(@Nullable Duration buildTimeout) {
+        this.buildTimeout = buildTimeout;
+    }
+
+    /**
+     * @return The maximum build durations of individual projects which override {@link #getBuildTimeout()}.
+     * The stages and modules of a project use the timeout of the project.
+     */
+    @NotNull
+    public Map<Project, Duration> getBuildTimeouts() {
+        return buildTimeouts;
+    }
+
+    public void setBuildTimeouts(@NotNull Map<Project, Duration> buildTimeouts) {
+        this.buildTimeouts = buildTimeouts;
+    }
+
+    /**
+     * @return The maximum time a build may go without printing anything or {@code null} (default) for no limit.
+     * Builds which are silent for longer are considered hung, are stopped and reported as {@link BuildResult.Status#TIMED_OUT}.
+     */
+    @Nullable
+    public Duration getSilenceTimeout() {
+        return silenceTimeout;
+    }
+
+    public void setSilenceTimeout(@Nullable Duration silenceTimeout) {
+        this.silenceTimeout = silenceTimeout;
+    }
+
+    /**
+     * @return The maximum duration of all builds together or {@code null} (default) for no limit.
+     * When it expires, running builds are stopped and reported as {@link BuildResult.Status#TIMED_OUT}
+     * and builds which did not start yet are reported as {@link BuildResult.Status#CANCELLED}.
+     */
+    @Nullable
+    public Duration getTotalTimeout() {
+        return totalTimeout;
+    }
+
+    public void setTotalTimeout(@Nullable Duration totalTimeout) {
+        this.totalTimeout = totalTimeout;
+    }
+
+    /**
+     * @return The metrics of the current or the most recent run or {@code null} if no builds were started yet
+     */
+    @Nullable
+    public BuildMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return The file to which the metrics are written in the Prometheus text format when all builds finished or {@code null} (default) to not write them
+     */
+    @Nullable
+    public File getMetricsFile() {
+        return metricsFile;
+    }
+
+    public void setMetricsFile(@Nullable File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    /**
+     * @return The file to which the JSON summary of the metrics is written when all builds finished or {@code null} (default) to not write it
+     */
+    @Nullable
+    public File getMetricsSummaryFile() {
+        return metricsSummaryFile;
+    }
+
+    public void setMetricsSummaryFile(@Nullable File metricsSummaryFile) {
+        this.metricsSummaryFile = metricsSummaryFile;
+    }
+
+    /**
+     * @return The file to which a timeline of the builds is written in the trace event format (viewable in {@code chrome://tracing} or the Perfetto UI)
+     * when all builds finished or {@code null} (default) to not write it
+     */
+    @Nullable
+    public File getTraceFile() {
+        return traceFile;
+    }
+
+    public void setTraceFile(@Nullable File traceFile) {
+        this.traceFile = traceFile;
+    }
+
+    /**
+     * @return How failed builds are retried or {@code null} (default) if failed builds are not retried.
+     * The failure policy only applies once a build failed on its last retry.
+     */
+    @Nullable
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return The goals of each stage if the builds are pipelined (see {@link ProjectList#getStages(List, int)}) or {@code null} (default)
+     * if every project is built with {@link #getMavenGoals()} in a single build.
+     * Failed stages are retried with their own goals, {@link RetryPolicy#getRetryGoals()} is not used for them.
+     */
+    @Nullable
+    public List<List<String>> getPipelineStages() {
+        return pipelineStages;
+    }
+
+    public void setPipelineStages(@Nullable List<List<String>> pipelineStages) {
+        this.pipelineStages = pipelineStages;
+    }
+
+    /**
+     * @return The index of the pipeline stage after which the dependents of a project may start building or a negative number (default) for the last stage
+     */
+    public int getArtifactStage() {
+        return artifactStage;
+    }
+
+    public void setArtifactStage(int artifactStage) {
+        this.artifactStage = artifactStage;
+    }
+
+    /**
+     * Executes all builds and blocks until every build has finished.
+     *
+     * @return The results of all builds in build order
+     * @see #startBuilds()
+     */
     @NotNull
     public List<BuildResult> executeBuilds() throws InterruptedException, IOException, XmlPullParserException {
-        List<BuildResult> res = new ArrayList<>(getProjectList().size());
+        return startBuilds().awaitCompletion();
+    }
 
-        ProjectList finalProjectList = isSmartOrder() ? getProjectList().getSmartOrder() : getProjectList();
+    /**
+     * Determines the build order and starts the builds in the background.
+     *
+     * @return A handle to the running builds which can be used to wait for them to finish
+     */
+    @NotNull
+    public BatchBuild startBuilds() throws IOException, XmlPullParserException, InterruptedException {
+        BuildMetrics metrics = new BuildMetrics();
+        this.metrics = metrics;
+        long startNanos = System.nanoTime();
+        if (getProjectList().getEventListener() == null)
+            getProjectList().setEventListener(getEventPublisher());
+        if (getBackend() instanceof InvokerBackend && ((InvokerBackend) getBackend()).getEventListener() == null)
+            ((InvokerBackend) getBackend()).setEventListener(getEventPublisher());
+        GitChangeDetector changeDetector = getChangeDetector();
+        boolean revisionsUsed = getRevisionStoreFile() != null && (changeDetector != null || isRecordRevisions());
+        RevisionStore revisionStore = revisionsUsed ? new RevisionStore(getRevisionStoreFile()) : null;
 
-        System.out.println("Build order:");
-        for (Project project : finalProjectList)
-            System.out.println(project.getProjectFolder());
+        ProjectList projectList = isModuleGranularity() ? getProjectList().getModules() : getProjectList();
+        ProjectList buildOrder;
+        if (changeDetector != null) {
+            if (changeDetector.getRevisionStore() == null)
+                changeDetector.setRevisionStore(revisionStore);
+            if (changeDetector.getEventListener() == null)
+                changeDetector.setEventListener(getEventPublisher());
+            buildOrder = projectList.getAffectedProjects(changeDetector.getChangedProjects(projectList));
+        } else {
+            buildOrder = isSmartOrder() ? projectList.getSmartOrder() : projectList;
+        }
+        ProjectList finalProjectList = getPipelineStages() == null ? buildOrder
+                : buildOrder.getStages(getPipelineStages(), getArtifactStage() < 0 ? getPipelineStages().size() - 1 : getArtifactStage());
 
-        Map<Project, Thread> threads = new HashMap<>(finalProjectList.size());
+        boolean pomsParsed = changeDetector != null || isSmartOrder();
+        metrics.setBuildOrder(finalProjectList);
+        metrics.setGraphResolution(Duration.ofNanos(System.nanoTime() - startNanos), pomsParsed ? projectList.getPomParseDuration() : Duration.ZERO);
+        getEventPublisher().onEvent(BuildEvent.graphResolved(finalProjectList));
 
-        boolean[] setupCompleted = new boolean[1];
-        setupCompleted[0] = false;
+        LogDirectory.RunFolder logRunFolder = null;
+        if (getOutputSetting() == OutputSetting.TO_COMPRESSED_FILE)
+            logRunFolder = new LogDirectory(getLogDirectory(), getLogRetention()).createRunFolder();
 
-        for (Project project : finalProjectList) {
-            Thread projectThread = new Thread(() -> {
-                try {
-                    boolean dummy=false;
-                    while (!setupCompleted[0])
-                        dummy = !dummy;
-
-                    // wait for dependencies
-                    for (Project dependency : project.getDependencies()) {
-                        Thread dependencyThread = threads.get(dependency);
-                        if (dependencyThread.isAlive()) {
-                            System.out.println("(" + project.getProjectFolder() + "): Waiting for dependencies to finish building...");
-                            dependencyThread.join();
+        BuildRun buildRun = new BuildRun(finalProjectList, logRunFolder, metrics);
+        if (getBuildDurationStoreFile() != null)
+            buildRun.buildDurationStore = new BuildDurationStore(getBuildDurationStoreFile());
+        if (isIncrementalBuild())
+            buildRun.fingerprintStore = new FingerprintStore(getFingerprintStoreFile());
+        buildRun.outputCache = getBuildOutputCache();
+        if (getBuildTimeout() != null || !getBuildTimeouts().isEmpty() || getSilenceTimeout() != null || getTotalTimeout() != null) {
+            buildRun.watchdog = new BuildWatchdog(getTotalTimeout(), () -> {
+                if (buildRun.scheduler != null)
+                    buildRun.scheduler.cancel();
+            }, getEventPublisher());
+        }
+        if (getResourceBudget() != null && getResourceWeightStoreFile() != null) {
+            buildRun.resourceWeightStore = new ResourceWeightStore(getResourceWeightStoreFile());
+            buildRun.memorySampler = new MemorySampler();
+        }
+        if (revisionStore != null) {
+            buildRun.revisionStore = revisionStore;
+            // remember the revisions the builds start from, the repositories might move on while the builds are running
+            GitChangeDetector revisionDetector = changeDetector;
+            if (revisionDetector == null) {
+                revisionDetector = new GitChangeDetector();
+                revisionDetector.setEventListener(getEventPublisher());
+            }
+            buildRun.startRevisions.putAll(revisionDetector.getHeadRevisions(finalProjectList));
+        }
+
+        BuildResultCollector resultCollector = new BuildResultCollector(finalProjectList);
+        FutureTask<List<BuildResult>> task = new FutureTask<>(() -> runBuilds(finalProjectList, buildRun, resultCollector));
+        new Thread(task, "batch-build-coordinator").start();
+        return new BatchBuild(finalProjectList, resultCollector, task, metrics);
+    }
+
+    @NotNull
+    private List<BuildResult> runBuilds(@NotNull ProjectList finalProjectList, @NotNull BuildRun buildRun, @NotNull BuildResultCollector resultCollector) throws InterruptedException, IOException {
+        BuildDurationStore buildDurationStore = buildRun.buildDurationStore;
+        long averageDuration = buildDurationStore == null ? -1 : buildDurationStore.getAverageDuration();
+        ToLongFunction<Project> estimatedDuration = project -> {
+            long duration = buildDurationStore == null ? -1 : buildDurationStore.getDuration(project);
+            if (duration < 0)
+                duration = averageDuration;
+            return Math.max(1, duration);
+        };
+
+        int threadsToUse = isExecuteBuildsInParallel() ? getThreads() : 1;
+        Map<Project, Exception> failures;
+        BuildScheduler scheduler;
+        try {
+            scheduler = new BuildScheduler(finalProjectList, threadsToUse, estimatedDuration,
+                    (project, readyTime, retryCount) -> {
+                        buildRun.metrics.workerStarted();
+                        try {
+                            BuildResult result = buildProject(project, readyTime, retryCount, buildRun);
+                            resultCollector.add(result);
+                            buildRun.metrics.addResult(result);
+                            buildRun.trace.record(result, readyTime);
+                            return result.isSuccessful();
+                        } finally {
+                            buildRun.metrics.workerFinished();
                         }
-                    }
-
-                    System.out.println("(" + project.getProjectFolder() + "): Build started...");
-
-                    InvocationRequest invocationRequest = new DefaultInvocationRequest();
-                    invocationRequest.setBaseDirectory(project.getProjectFolder());
-                    invocationRequest.setGoals(getMavenGoals());
-
-                    File logFile = null;
-                    if (getOutputSetting() == OutputSetting.TO_FILE) {
-                        Path targetPath = project.getProjectFolder().toPath().resolve("target");
-                        logFile = targetPath.resolve("batchBuildOutput.log").toFile();
-                        Files.createDirectories(targetPath);
-                    }
-
-                    invocationRequest.setOutputHandler(constructOutputHandler(logFile));
-
-                    Invoker invoker = new DefaultInvoker();
-                    if (getMavenHome() != null)
-                        invoker.setMavenHome(new File(getMavenHome()));
-                    InvocationResult invocationResult = invoker.execute(invocationRequest);
-                    res.add(new BuildResult(invocationResult, logFile));
-                    System.out.println("(" + project.getProjectFolder() + "): Build finished!");
-                } catch (MavenInvocationException | IOException | InterruptedException e) {
-                    throw new RuntimeException(e);
+                    },
+                    getResourceBudget(), project -> getResourceWeight(project, buildRun));
+            scheduler.setFailurePolicy(getFailurePolicy());
+            scheduler.setRetryPolicy(getRetryPolicy());
+            scheduler.setEventListener(getEventPublisher());
+            buildRun.metrics.setEstimatedCriticalPathMillis(scheduler.getLongestCriticalPath());
+            buildRun.scheduler = scheduler;
+            failures = scheduler.run();
+        } finally {
+            if (buildRun.memorySampler != null)
+                buildRun.memorySampler.close();
+            if (buildRun.watchdog != null)
+                buildRun.watchdog.close();
+            buildRun.logWriter.close();
+        }
+
+        for (Map.Entry<Project, Project> skippedProject : scheduler.getSkippedProjects().entrySet()) {
+            BuildResult result = new BuildResult(skippedProject.getKey(), null, null);
+            result.setStatus(BuildResult.Status.DEPENDENCY_FAILED);
+            result.setFailedDependency(skippedProject.getValue());
+            resultCollector.add(result);
+            getEventPublisher().onEvent(BuildEvent.projectDone(result));
+        }
+        for (Project cancelledProject : scheduler.getCancelledProjects()) {
+            BuildResult result = new BuildResult(cancelledProject, null, null);
+            result.setStatus(BuildResult.Status.CANCELLED);
+            result.setRetryCount(scheduler.getRetryCount(cancelledProject));
+            resultCollector.add(result);
+            getEventPublisher().onEvent(BuildEvent.projectDone(result));
+        }
+
+        // should not happen as buildProject handles its exceptions, but make sure no failure goes unnoticed
+        for (Map.Entry<Project, Exception> failure : failures.entrySet()) {
+            if (resultCollector.contains(failure.getKey()))
+                continue;
+            BuildResult result = new BuildResult(failure.getKey(), null, null);
+            result.setExecutionException(failure.getValue());
+            resultCollector.add(result);
+        }
+
+        if (buildDurationStore != null)
+            buildDurationStore.save();
+        if (buildRun.fingerprintStore != null)
+            buildRun.fingerprintStore.save();
+        if (buildRun.revisionStore != null)
+            buildRun.revisionStore.save();
+        if (buildRun.resourceWeightStore != null)
+            buildRun.resourceWeightStore.save();
+
+        List<BuildResult> results = resultCollector.getResults();
+        for (BuildResult result : results)
+            buildRun.metrics.addResult(result);
+        buildRun.metrics.finish();
+        try {
+            if (getMetricsFile() != null)
+                buildRun.metrics.writePrometheusText(getMetricsFile());
+            if (getMetricsSummaryFile() != null)
+                buildRun.metrics.writeJson(getMetricsSummaryFile());
+        } catch (IOException e) {
+            getEventPublisher().onEvent(BuildEvent.warning(null, "Unable to write the metrics: " + e.getMessage()));
+        }
+        try {
+            if (getTraceFile() != null)
+                buildRun.trace.write(getTraceFile(), finalProjectList);
+        } catch (IOException e) {
+            getEventPublisher().onEvent(BuildEvent.warning(null, "Unable to write the trace: " + e.getMessage()));
+        }
+        getEventPublisher().onEvent(BuildEvent.batchFinished(results));
+        return results;
+    }
+
+    @NotNull
+    private BuildResult buildProject(@NotNull Project project, @NotNull Instant readyTime, int retryCount, @NotNull BuildRun buildRun) {
+        Instant startTime = Instant.now();
+        List<String> stageGoals = project instanceof StageProject ? ((StageProject) project).getGoals() : getMavenGoals();
+        List<String> goals = stageGoals;
+        if (retryCount > 0 && !(project instanceof StageProject) && getRetryPolicy() != null && getRetryPolicy().getRetryGoals() != null)
+            goals = getRetryPolicy().getRetryGoals();
+        // a build with other goals (e. g. without tests) must not mark the project as up to date for the regular goals
+        boolean regularGoals = goals.equals(stageGoals);
+
+        String fingerprint = null;
+        if (regularGoals && (buildRun.fingerprintStore != null || buildRun.outputCache != null)) {
+            try {
+                fingerprint = computeFingerprint(project, stageGoals, buildRun);
+            } catch (IOException e) {
+                getEventPublisher().onEvent(BuildEvent.warning(project, "Unable to fingerprint the project, building it anyway: " + e.getMessage()));
+            }
+        }
+
+        if (fingerprint != null && buildRun.fingerprintStore != null && fingerprint.equals(buildRun.fingerprintStore.getFingerprint(project))) {
+            return createSkippedResult(project, BuildResult.Status.UP_TO_DATE, fingerprint, readyTime, startTime, retryCount, buildRun);
+        }
+
+        if (fingerprint != null && buildRun.outputCache != null) {
+            try {
+                if (buildRun.outputCache.restore(fingerprint, project.getProjectFolder())) {
+                    return createSkippedResult(project, BuildResult.Status.CACHED, fingerprint, readyTime, startTime, retryCount, buildRun);
                 }
-            });
+            } catch (IOException e) {
+                getEventPublisher().onEvent(BuildEvent.warning(project, "Unable to restore the build outputs from the cache, building it anyway: " + e.getMessage()));
+            }
+        }
+
+        getEventPublisher().onEvent(BuildEvent.projectStarted(project, retryCount));
+        startTime = Instant.now();
+        long startNanos = System.nanoTime();
+
+        File logFile = null;
+        long peakMemory = -1;
+        BuildWatchdog.Watch watch = null;
+        BuildResult res;
+        try {
+            InvocationRequest invocationRequest = new DefaultInvocationRequest();
+            invocationRequest.setGoals(goals);
+            Project builtProject = getBuiltProject(project);
+            if (builtProject instanceof ModuleProject) {
+                // the other modules of the reactor are separate nodes which were already built by now
+                ModuleProject module = (ModuleProject) builtProject;
+                invocationRequest.setBaseDirectory(module.getReactorProject().getProjectFolder());
+                if (module.isReactorRoot())
+                    invocationRequest.setRecursive(false);
+                else
+                    invocationRequest.setProjects(Collections.singletonList(module.getModulePath()));
+            } else {
+                invocationRequest.setBaseDirectory(project.getProjectFolder());
+            }
+
+            AsyncLogWriter.Channel logChannel = null;
+            if (getOutputSetting() == OutputSetting.TO_FILE) {
+                Path targetPath = project.getProjectFolder().toPath().resolve("target");
+                String logFileName = project instanceof StageProject ? "batchBuildOutput-stage" + (((StageProject) project).getStageIndex() + 1) + ".log" : "batchBuildOutput.log";
+                logFile = targetPath.resolve(logFileName).toFile();
+                Files.createDirectories(targetPath);
+                logChannel = buildRun.logWriter.openChannel(logFile);
+            } else if (getOutputSetting() == OutputSetting.TO_COMPRESSED_FILE) {
+                if (buildRun.logRunFolder == null)
+                    throw new NullPointerException("The log folder of the run must not be null");
+                logFile = buildRun.logRunFolder.getLogFile(project, ".log.gz");
+                logChannel = buildRun.logWriter.openCompressedChannel(logFile);
+            }
+
+            InvocationOutputHandler outputHandler = constructOutputHandler(logChannel);
+            InvocationOutputHandler errorHandler = new SystemOutHandler();
+            outputHandler = new ObservedOutputHandler(project, buildRun.metrics, outputHandler);
+            errorHandler = new ObservedOutputHandler(project, buildRun.metrics, errorHandler);
+            if (buildRun.watchdog != null) {
+                Thread buildThread = Thread.currentThread();
+                watch = buildRun.watchdog.watch(project, getBuildTimeouts().getOrDefault(getConfiguredProject(project), getBuildTimeout()), getSilenceTimeout(), () -> {
+                    if (!getBackend().kill(project))
+                        buildThread.interrupt();
+                });
+                outputHandler = new WatchedOutputHandler(watch, outputHandler);
+                errorHandler = new WatchedOutputHandler(watch, errorHandler);
+            }
+            invocationRequest.setOutputHandler(outputHandler);
+            invocationRequest.setErrorHandler(errorHandler);
 
-            threads.put(project, projectThread);
-            projectThread.start();
+            if (getMavenHome() != null)
+                invocationRequest.setMavenHome(new File(getMavenHome()));
+            if (buildRun.memorySampler != null)
+                buildRun.memorySampler.register(project, invocationRequest.getBaseDirectory());
+            InvocationResult invocationResult;
+            try {
+                invocationResult = getBackend().execute(project, invocationRequest);
+            } finally {
+                try {
+                    if (watch != null)
+                        watch.close();
+                    if (buildRun.memorySampler != null)
+                        peakMemory = buildRun.memorySampler.unregister(project);
+                } finally {
+                    if (logChannel != null)
+                        closeLogChannel(project, logChannel);
+                }
+            }
+            res = new BuildResult(project, invocationResult, logFile);
+        } catch (IOException | MavenInvocationException | RuntimeException e) {
+            res = new BuildResult(project, null, logFile);
+            res.setExecutionException(e);
+        }
 
-            if (!isExecuteBuildsInParallel()) {
-                setupCompleted[0] = true;
-                projectThread.join();
+        res.setStartTime(startTime);
+        res.setEndTime(Instant.now());
+        res.setQueueWaitTime(Duration.between(readyTime, startTime));
+        res.setRetryCount(retryCount);
+        if (watch != null && watch.isTimedOut()) {
+            res.setStatus(BuildResult.Status.TIMED_OUT);
+            res.setExecutionException(new TimeoutException(watch.getTimeoutReason()));
+        } else if (!res.isSuccessful() && buildRun.scheduler != null && buildRun.scheduler.isCancelled()) {
+            // the scheduler interrupts running builds if the builds are cancelled
+            res.setStatus(BuildResult.Status.CANCELLED);
+        }
+
+        if (buildRun.buildDurationStore != null && res.isSuccessful() && regularGoals)
+            buildRun.buildDurationStore.setDuration(project, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        if (buildRun.resourceWeightStore != null && res.isSuccessful() && peakMemory > 0)
+            buildRun.resourceWeightStore.setPeakMemory(project, peakMemory);
+        if (res.isSuccessful() && regularGoals) {
+            recordSuccess(project, fingerprint, buildRun);
+            if (buildRun.outputCache != null && fingerprint != null) {
+                try {
+                    // file systems may only store modification times in seconds
+                    long modifiedAfter = startTime.toEpochMilli() / 1000 * 1000;
+                    buildRun.outputCache.store(fingerprint, project.getProjectFolder(), getBuiltModels(project), modifiedAfter);
+                } catch (IOException | XmlPullParserException e) {
+                    getEventPublisher().onEvent(BuildEvent.warning(project, "Unable to store the build outputs in the cache: " + e.getMessage()));
+                }
             }
         }
+        getEventPublisher().onEvent(BuildEvent.projectDone(res));
+        return res;
+    }
+
+    /**
+     * Closes the log of a build. The log does not decide whether the build succeeded, so failures are reported as warnings only.
+     */
+    private void closeLogChannel(@NotNull Project project, @NotNull AsyncLogWriter.Channel logChannel) {
+        try {
+            logChannel.close();
+        } catch (IOException e) {
+            getEventPublisher().onEvent(BuildEvent.warning(project, "Unable to write the build log " + logChannel.getLogFile() + ": " + e.getMessage()));
+        }
+    }
+
+    @NotNull
+    private BuildResult createSkippedResult(@NotNull Project project, @NotNull BuildResult.Status status, @NotNull String fingerprint, @NotNull Instant readyTime, @NotNull Instant startTime, int retryCount, @NotNull BuildRun buildRun) {
+        recordSuccess(project, fingerprint, buildRun);
+        BuildResult res = new BuildResult(project, null, null);
+        res.setStatus(status);
+        res.setStartTime(startTime);
+        res.setEndTime(Instant.now());
+        res.setQueueWaitTime(Duration.between(readyTime, startTime));
+        res.setRetryCount(retryCount);
+        getEventPublisher().onEvent(BuildEvent.projectDone(res));
+        return res;
+    }
+
+    /**
+     * @return The configured weight of the project, the weight learned from its peak memory usage or the default weight
+     */
+    @NotNull
+    private ResourceWeight getResourceWeight(@NotNull Project project, @NotNull BuildRun buildRun) {
+        ResourceWeight configuredWeight = getResourceWeights().get(getConfiguredProject(project));
+        if (configuredWeight != null)
+            return configuredWeight;
+        long peakMemory = buildRun.resourceWeightStore == null ? -1 : buildRun.resourceWeightStore.getPeakMemory(project);
+        if (peakMemory > 0)
+            return new ResourceWeight(peakMemory, getDefaultResourceWeight().getCpus());
+        return getDefaultResourceWeight();
+    }
+
+    private void recordSuccess(@NotNull Project project, @Nullable String fingerprint, @NotNull BuildRun buildRun) {
+        if (fingerprint != null) {
+            buildRun.cleanFingerprints.put(project, fingerprint);
+            if (buildRun.fingerprintStore != null)
+                buildRun.fingerprintStore.setFingerprint(project, fingerprint);
+        }
+        // the revision marks the whole project as built, so the earlier stages of a pipeline must not record it
+        boolean completelyBuilt = !(project instanceof StageProject) || ((StageProject) project).isLastStage();
+        if (buildRun.revisionStore != null && completelyBuilt && buildRun.startRevisions.containsKey(project))
+            buildRun.revisionStore.setRevision(getBuiltProject(project), buildRun.startRevisions.get(project));
+    }
+
+    /**
+     * @return The project which is built by a build of the specified node of the graph, i. e. the project of a {@link StageProject}
+     */
+    @NotNull
+    private static Project getBuiltProject(@NotNull Project project) {
+        return project instanceof StageProject ? ((StageProject) project).getProject() : project;
+    }
 
-        setupCompleted[0] = true;
+    /**
+     * @return The project of the {@link #getProjectList()} which the specified node of the graph belongs to.
+     * This is the key of the per project settings like {@link #getBuildTimeouts()}.
+     */
+    @NotNull
+    private static Project getConfiguredProject(@NotNull Project project) {
+        Project builtProject = getBuiltProject(project);
+        return builtProject instanceof ModuleProject ? ((ModuleProject) builtProject).getReactorProject() : builtProject;
+    }
 
+    /**
+     * @return The models of all poms which are built by a build of the specified project
+     */
+    @NotNull
+    private List<Model> getBuiltModels(@NotNull Project project) throws IOException, XmlPullParserException {
+        if (!(getBuiltProject(project) instanceof ModuleProject))
+            return getModelsWithModules(project.getProjectFolder());
+        Model model = getProjectList().getPomCache().getModel(project.getProjectFolder());
+        return model == null ? Collections.emptyList() : Collections.singletonList(model);
+    }
+
+    /**
+     * @return The models of the pom in the specified folder and of all of its (transitive) modules
+     */
+    @NotNull
+    private List<Model> getModelsWithModules(@NotNull File baseDir) throws IOException, XmlPullParserException {
+        List<Model> res = new ArrayList<>();
+        Model model = getProjectList().getPomCache().getModel(baseDir);
+        if (model == null)
+            return res;
+        res.add(model);
+        for (String module : model.getModules())
+            res.addAll(getModelsWithModules(baseDir.toPath().resolve(module).toFile()));
         return res;
     }
 
+    /**
+     * @return The fingerprint of the specified project or {@code null} if an upstream project of this run did not build successfully,
+     * in which case the project must be built and its fingerprint must not be recorded.
+     */
+    @Nullable
+    private String computeFingerprint(@NotNull Project project, @NotNull List<String> goals, @NotNull BuildRun buildRun) throws IOException {
+        List<String> upstreamFingerprints = new ArrayList<>(project.getDependencies().size());
+        for (Project dependency : project.getDependencies()) {
+            String upstreamFingerprint = buildRun.cleanFingerprints.get(dependency);
+            if (upstreamFingerprint == null) {
+                if (buildRun.projects.contains(dependency))
+                    return null;
+                // not part of this run, so use the state of its last successful build
+                upstreamFingerprint = buildRun.fingerprintStore == null ? null : buildRun.fingerprintStore.getFingerprint(dependency);
+                if (upstreamFingerprint == null)
+                    upstreamFingerprint = "";
+            }
+            upstreamFingerprints.add(upstreamFingerprint);
+        }
+        Collections.sort(upstreamFingerprints);
+        return ProjectFingerprinter.fingerprint(project, goals, upstreamFingerprints);
+    }
+
     @NotNull
-    private InvocationOutputHandler constructOutputHandler(File logFile) {
+    private InvocationOutputHandler constructOutputHandler(@Nullable AsyncLogWriter.Channel logChannel) {
         switch (getOutputSetting()) {
             case IGNORE:
                 return new IgnoreOutputHandler();
             case TO_FILE:
-                if (logFile == null)
-                    throw new NullPointerException("Parameter logFile must not be null");
-                return new PrintToFileOutputHandler(logFile);
+            case TO_COMPRESSED_FILE:
+                if (logChannel == null)
+                    throw new NullPointerException("Parameter logChannel must not be null");
+                return new PrintToFileOutputHandler(logChannel);
             case TO_STANDARD_OUT:
                 return new PrintToStandardOutOutputHandler();
         }
@@ -184,6 +984,18 @@ public class Executor {
         return null;
     }
 
+    /**
+     * @return The backend which runs the individual builds. Defaults to {@link InvokerBackend} which forks a new maven process per build.
+     */
+    @NotNull
+    public BuildBackend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(@NotNull BuildBackend backend) {
+        this.backend = backend;
+    }
+
     @Nullable
     public String getMavenHome() {
         return mavenHome;
@@ -194,7 +1006,72 @@ public class Executor {
     }
 
     public enum OutputSetting {
-        IGNORE, TO_FILE, TO_STANDARD_OUT
+        IGNORE, TO_FILE, TO_STANDARD_OUT,
+        /**
+         * Writes gzip compressed logs to a subfolder of {@link #getLogDirectory()} which is created for each run
+         */
+        TO_COMPRESSED_FILE
+    }
+
+    public enum FailurePolicy {
+        /**
+         * Cancels all builds which did not start yet and interrupts all running builds as soon as a build fails
+         */
+        FAIL_FAST,
+        /**
+         * Skips the (transitive) dependents of a failed project as they would be built against outdated artifacts, but builds all other projects.
+         * This is what maven does with {@code --fail-at-end}.
+         */
+        FAIL_AT_END,
+        /**
+         * Builds all projects regardless of failed builds, including the dependents of failed projects
+         */
+        FAIL_NEVER
+    }
+
+    /**
+     * State which is shared by all builds of a single call to {@link #executeBuilds()}
+     */
+    private static class BuildRun {
+        @NotNull
+        private final Set<Project> projects;
+        @Nullable
+        private BuildDurationStore buildDurationStore;
+        @Nullable
+        private FingerprintStore fingerprintStore;
+        @Nullable
+        private RevisionStore revisionStore;
+        @Nullable
+        private BuildOutputCache outputCache;
+        @Nullable
+        private ResourceWeightStore resourceWeightStore;
+        @Nullable
+        private MemorySampler memorySampler;
+        @Nullable
+        private BuildWatchdog watchdog;
+        @Nullable
+        private volatile BuildScheduler scheduler;
+        // the git revisions of the projects at the start of this run
+        @NotNull
+        private final Map<Project, String> startRevisions = new HashMap<>();
+        // fingerprints of the projects of this run which were built successfully, were up to date or were restored from the cache
+        @NotNull
+        private final ConcurrentMap<Project, String> cleanFingerprints = new ConcurrentHashMap<>();
+        @NotNull
+        private final AsyncLogWriter logWriter;
+        @Nullable
+        private final LogDirectory.RunFolder logRunFolder;
+        @NotNull
+        private final BuildMetrics metrics;
+        @NotNull
+        private final BuildTrace trace = new BuildTrace(Instant.now());
+
+        private BuildRun(@NotNull List<Project> projects, @Nullable LogDirectory.RunFolder logRunFolder, @NotNull BuildMetrics metrics) {
+            this.projects = new HashSet<>(projects);
+            this.logWriter = new AsyncLogWriter();
+            this.logRunFolder = logRunFolder;
+            this.metrics = metrics;
+        }
     }
 
     private class IgnoreOutputHandler implements InvocationOutputHandler {
@@ -215,22 +1092,67 @@ public class Executor {
 
     private class PrintToFileOutputHandler implements InvocationOutputHandler {
         @NotNull
-        private File logFile;
+        private AsyncLogWriter.Channel logChannel;
 
-        public PrintToFileOutputHandler(@NotNull File logFile) {
-            this.logFile = logFile;
+        public PrintToFileOutputHandler(@NotNull AsyncLogWriter.Channel logChannel) {
+            this.logChannel = logChannel;
         }
 
         @Override
         public void consumeLine(String s) throws IOException {
-            FileWriter fileWriter = new FileWriter(getLogFile(), true);
-            fileWriter.write(s + "\n");
-            fileWriter.close();
+            logChannel.writeLine(s);
         }
 
         @NotNull
         public File getLogFile() {
-            return logFile;
+            return logChannel.getLogFile();
+        }
+    }
+
+    /**
+     * Counts every line in the metrics and publishes it as a {@link BuildEvent.Type#LOG_LINE} event to the subscribers of these events before passing it on
+     */
+    private class ObservedOutputHandler implements InvocationOutputHandler {
+        @NotNull
+        private final Project project;
+        @NotNull
+        private final BuildMetrics metrics;
+        @NotNull
+        private final InvocationOutputHandler delegate;
+
+        ObservedOutputHandler(@NotNull Project project, @NotNull BuildMetrics metrics, @NotNull InvocationOutputHandler delegate) {
+            this.project = project;
+            this.metrics = metrics;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void consumeLine(String s) throws IOException {
+            metrics.logLine(project, s);
+            if (getEventPublisher().hasSubscribers(BuildEvent.Type.LOG_LINE))
+                getEventPublisher().onEvent(BuildEvent.logLine(project, s));
+            delegate.consumeLine(s);
+        }
+    }
+
+    /**
+     * Resets the silence timeout of the build with every line
+     */
+    private static class WatchedOutputHandler implements InvocationOutputHandler {
+        @NotNull
+        private final BuildWatchdog.Watch watch;
+        @NotNull
+        private final InvocationOutputHandler delegate;
+
+        WatchedOutputHandler(@NotNull BuildWatchdog.Watch watch, @NotNull InvocationOutputHandler delegate) {
+            this.watch = watch;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void consumeLine(String s) throws IOException {
+            watch.touch();
+            delegate.consumeLine(s);
         }
     }
 }
@@ -0,0 +1,90 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Maps maven coordinates to the {@link Project} which contains the pom with those coordinates.
+ * Poms of submodules are mapped to the project which contains the submodule.
+ * Coordinates are looked up by {@code groupId:artifactId:version}. If the version to look up is unknown
+ * (e. g. because it is managed or not interpolated), the lookup falls back to {@code groupId:artifactId}.
+ * Version ranges match the highest known version within the range.
+ */
+public class GavIndex {
+    private final Map<String, Project> byGav;
+    private final Map<String, Project> byGa;
+    private final Map<String, List<String>> versionsByGa;
+
+    public GavIndex(int expectedSize) {
+        byGav = new HashMap<>(Math.max(16, expectedSize * 2));
+        byGa = new HashMap<>(Math.max(16, expectedSize * 2));
+        versionsByGa = new HashMap<>(Math.max(16, expectedSize * 2));
+    }
+
+    public void add(@Nullable String groupId, @Nullable String artifactId, @Nullable String version, @NotNull Project owningProject) {
+        if (groupId == null || artifactId == null)
+            return;
+        byGa.putIfAbsent(getKey(groupId, artifactId), owningProject);
+        if (version != null && byGav.putIfAbsent(getKey(groupId, artifactId, version), owningProject) == null)
+            versionsByGa.computeIfAbsent(getKey(groupId, artifactId), key -> new ArrayList<>(1)).add(version);
+    }
+
+    /**
+     * @return The project which contains the pom with the specified coordinates or {@code null} if no such pom is known.
+     * If {@code version} is {@code null} or contains an unresolved property, the version is ignored.
+     * If {@code version} is a range, the project with the highest version within the range is returned.
+     */
+    @Nullable
+    public Project find(@Nullable String groupId, @Nullable String artifactId, @Nullable String version) {
+        if (groupId == null || artifactId == null)
+            return null;
+        if (version == null || version.contains("${"))
+            return byGa.get(getKey(groupId, artifactId));
+        if (MavenVersions.isRange(version))
+            return findInRange(groupId, artifactId, version);
+        return byGav.get(getKey(groupId, artifactId, version));
+    }
+
+    @Nullable
+    private Project findInRange(@NotNull String groupId, @NotNull String artifactId, @NotNull String range) {
+        String highestVersion = null;
+        for (String version : versionsByGa.getOrDefault(getKey(groupId, artifactId), Collections.emptyList())) {
+            if (MavenVersions.isInRange(version, range) && (highestVersion == null || MavenVersions.compare(version, highestVersion) > 0))
+                highestVersion = version;
+        }
+        return highestVersion == null ? null : byGav.get(getKey(groupId, artifactId, highestVersion));
+    }
+
+    @NotNull
+    private static String getKey(@NotNull String groupId, @NotNull String artifactId) {
+        return groupId + ':' + artifactId;
+    }
+
+    @NotNull
+    private static String getKey(@NotNull String groupId, @NotNull String artifactId, @NotNull String version) {
+        return groupId + ':' + artifactId + ':' + version;
+    }
+}
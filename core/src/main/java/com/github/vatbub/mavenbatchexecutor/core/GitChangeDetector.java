@@ -0,0 +1,348 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Finds the projects which contain changes according to git.
+ * The changes of each repository are computed with {@code git diff} against a revision range, which is either
+ * <ul>
+ * <li>specified for the repository (see {@link #setRange(File, String)}),</li>
+ * <li>the default range (see {@link #setDefaultRange(String)}) or</li>
+ * <li>the revision at which the project was last built successfully (see {@link #setRevisionStore(RevisionStore)}).</li>
+ * </ul>
+ * A range is anything that {@code git diff} accepts, e. g. {@code origin/master...HEAD} to compare two commits
+ * or a single revision like {@code HEAD~1} to compare that revision to the working tree.
+ * If a single revision is used, untracked files count as changes, too.
+ * <p>
+ * Projects which are not part of a git repository, projects for which no range is known and projects in repositories which git fails to diff
+ * are always considered changed. Each repository is only diffed once per range, no matter how many projects it contains.
+ */
+public class GitChangeDetector {
+    @NotNull
+    private final Map<String, String> ranges = new HashMap<>();
+    @Nullable
+    private String defaultRange;
+    @Nullable
+    private RevisionStore revisionStore;
+    @NotNull
+    private String gitExecutable = "git";
+    @Nullable
+    private BuildEventListener eventListener;
+
+    /**
+     * @return The range which is used for repositories without their own range or {@code null} to use the revisions of the last successful builds
+     */
+    @Nullable
+    public String getDefaultRange() {
+        return defaultRange;
+    }
+
+    public void setDefaultRange(@Nullable String defaultRange) {
+        this.defaultRange = defaultRange;
+    }
+
+    /**
+     * Sets the range which is used for all projects in the specified repository.
+     *
+     * @param repositoryRoot The top level folder of the repository
+     * @param range          The range to diff or {@code null} to remove the range of the repository
+     */
+    public void setRange(@NotNull File repositoryRoot, @Nullable String range) throws IOException {
+        if (range == null)
+            ranges.remove(repositoryRoot.getCanonicalPath());
+        else
+            ranges.put(repositoryRoot.getCanonicalPath(), range);
+    }
+
+    /**
+     * @return The store with the revisions of the last successful builds. Used for projects in repositories without a range if {@link #getDefaultRange()} is {@code null}.
+     */
+    @Nullable
+    public RevisionStore getRevisionStore() {
+        return revisionStore;
+    }
+
+    public void setRevisionStore(@Nullable RevisionStore revisionStore) {
+        this.revisionStore = revisionStore;
+    }
+
+    @NotNull
+    public String getGitExecutable() {
+        return gitExecutable;
+    }
+
+    public void setGitExecutable(@NotNull String gitExecutable) {
+        this.gitExecutable = gitExecutable;
+    }
+
+    /**
+     * @return The listener which is notified about projects that are considered changed for lack of information
+     * and about failures of git or {@code null} if these warnings are not reported
+     */
+    @Nullable
+    public BuildEventListener getEventListener() {
+        return eventListener;
+    }
+
+    public void setEventListener(@Nullable BuildEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * @param projects The projects to check
+     * @return The projects which contain at least one changed file
+     */
+    @NotNull
+    public Set<Project> getChangedProjects(@NotNull Collection<Project> projects) throws IOException, InterruptedException {
+        // null if git failed to diff the repository
+        Map<String, List<Path>> changedFiles = new HashMap<>();
+        Set<Project> res = new LinkedHashSet<>();
+
+        for (Project project : projects) {
+            File projectFolder = project.getProjectFolder().getCanonicalFile();
+            File repositoryRootFolder = findRepositoryRoot(projectFolder);
+            if (repositoryRootFolder == null) {
+                warn(project, "Not part of a git repository, considering it changed");
+                res.add(project);
+                continue;
+            }
+
+            String repositoryRoot = repositoryRootFolder.getPath();
+            String range = getRange(project, repositoryRoot);
+            if (range == null) {
+                warn(project, "No previous successful build recorded, considering it changed");
+                res.add(project);
+                continue;
+            }
+
+            String key = repositoryRoot + '\0' + range;
+            List<Path> files;
+            if (changedFiles.containsKey(key)) {
+                files = changedFiles.get(key);
+            } else {
+                files = getChangedFilesOrNull(repositoryRootFolder, range);
+                changedFiles.put(key, files);
+            }
+            if (files == null) {
+                res.add(project);
+                continue;
+            }
+
+            Path projectPath = projectFolder.toPath();
+            for (Path file : files) {
+                if (file.startsWith(projectPath)) {
+                    res.add(project);
+                    break;
+                }
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * @param folder Any folder within a git repository
+     * @return The commit id of {@code HEAD} of the repository which contains the specified folder or {@code null} if the folder is not part of a git repository
+     * or the revision could not be determined, in which case a warning is reported
+     */
+    @Nullable
+    public String getHeadRevision(@NotNull File folder) throws InterruptedException {
+        File repositoryRoot = findRepositoryRoot(folder);
+        return repositoryRoot == null ? null : getHeadRevisionOfRepository(repositoryRoot);
+    }
+
+    /**
+     * Determines the commit id of {@code HEAD} of the repositories which contain the specified projects.
+     * Git is invoked once per repository, projects which are not part of a git repository are not looked up at all.
+     *
+     * @param projects The projects to look up
+     * @return The revisions of all projects which are part of a git repository whose {@code HEAD} could be determined
+     */
+    @NotNull
+    public Map<Project, String> getHeadRevisions(@NotNull Collection<Project> projects) throws InterruptedException {
+        Map<File, File> repositoryRoots = new HashMap<>();
+        Map<File, String> revisions = new HashMap<>();
+        Map<Project, String> res = new HashMap<>();
+        for (Project project : projects) {
+            File folder = project.getProjectFolder();
+            File repositoryRoot;
+            if (repositoryRoots.containsKey(folder)) {
+                repositoryRoot = repositoryRoots.get(folder);
+            } else {
+                repositoryRoot = findRepositoryRoot(folder);
+                repositoryRoots.put(folder, repositoryRoot);
+            }
+            if (repositoryRoot == null)
+                continue;
+            String revision;
+            if (revisions.containsKey(repositoryRoot)) {
+                revision = revisions.get(repositoryRoot);
+            } else {
+                revision = getHeadRevisionOfRepository(repositoryRoot);
+                revisions.put(repositoryRoot, revision);
+            }
+            if (revision != null)
+                res.put(project, revision);
+        }
+        return res;
+    }
+
+    @Nullable
+    private String getHeadRevisionOfRepository(@NotNull File repositoryRoot) throws InterruptedException {
+        try {
+            List<String> output = runGit(repositoryRoot, "rev-parse", "--verify", "HEAD");
+            return output.isEmpty() ? null : output.get(0);
+        } catch (IOException e) {
+            warn(null, "(" + repositoryRoot + "): Unable to determine the revision of the repository: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the repository without invoking git by looking for {@code .git}, which is a folder in regular repositories
+     * and a file in worktrees and submodules.
+     *
+     * @return The top level folder of the repository which contains the specified folder or {@code null} if there is none
+     */
+    @Nullable
+    private static File findRepositoryRoot(@NotNull File folder) {
+        File current;
+        try {
+            current = folder.getCanonicalFile();
+        } catch (IOException e) {
+            current = folder.getAbsoluteFile();
+        }
+        while (current != null) {
+            if (new File(current, ".git").exists())
+                return current;
+            current = current.getParentFile();
+        }
+        return null;
+    }
+
+    private void warn(@Nullable Project project, @NotNull String message) {
+        if (getEventListener() != null)
+            getEventListener().onEvent(BuildEvent.warning(project, message));
+    }
+
+    @Nullable
+    private String getRange(@NotNull Project project, @NotNull String repositoryRoot) {
+        String range = ranges.get(repositoryRoot);
+        if (range != null)
+            return range;
+        if (getDefaultRange() != null)
+            return getDefaultRange();
+        return getRevisionStore() == null ? null : getRevisionStore().getRevision(project);
+    }
+
+    @Nullable
+    private List<Path> getChangedFilesOrNull(@NotNull File repositoryRoot, @NotNull String range) throws InterruptedException {
+        try {
+            return getChangedFiles(repositoryRoot, range);
+        } catch (IOException e) {
+            warn(null, "(" + repositoryRoot + "): Unable to determine the changes in " + range + ", considering all projects in the repository changed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @NotNull
+    private List<Path> getChangedFiles(@NotNull File repositoryRoot, @NotNull String range) throws IOException, InterruptedException {
+        List<String> relativePaths = new ArrayList<>(runGit(repositoryRoot, "diff", "--name-only", "-z", range, "--"));
+        // a single revision is compared to the working tree which may contain new files
+        if (!range.contains(".."))
+            relativePaths.addAll(runGit(repositoryRoot, "ls-files", "--others", "--exclude-standard", "-z"));
+
+        List<Path> res = new ArrayList<>(relativePaths.size());
+        for (String relativePath : relativePaths)
+            res.add(repositoryRoot.toPath().resolve(relativePath).normalize());
+        return res;
+    }
+
+    /**
+     * Runs git in the specified folder.
+     *
+     * @return The lines (or the NUL separated entries if {@code -z} is used) which git printed to the standard output
+     * @throws IOException If git could not be started or exited with a non zero exit code
+     */
+    @NotNull
+    private List<String> runGit(@NotNull File workingDirectory, @NotNull String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(args.length + 1);
+        command.add(getGitExecutable());
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(workingDirectory).start();
+        process.getOutputStream().close();
+
+        // the error output is drained on its own thread, otherwise git blocks once the pipe of the stream which is not read is full
+        ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
+        Thread errorPump = new Thread(() -> {
+            try {
+                copy(process.getErrorStream(), errorOutput);
+            } catch (IOException e) {
+                // the stream was closed as the process ended
+            }
+        }, "git-error-pump");
+        errorPump.setDaemon(true);
+        errorPump.start();
+
+        String output;
+        int exitCode;
+        try {
+            ByteArrayOutputStream standardOutput = new ByteArrayOutputStream();
+            copy(process.getInputStream(), standardOutput);
+            output = new String(standardOutput.toByteArray(), StandardCharsets.UTF_8);
+            exitCode = process.waitFor();
+            errorPump.join();
+        } catch (IOException | InterruptedException e) {
+            process.destroyForcibly();
+            throw e;
+        }
+        if (exitCode != 0) {
+            String error = new String(errorOutput.toByteArray(), StandardCharsets.UTF_8);
+            throw new IOException("git " + String.join(" ", args) + " failed with exit code " + exitCode + ": " + error.trim());
+        }
+
+        List<String> res = new ArrayList<>();
+        for (String entry : output.split(Arrays.asList(args).contains("-z") ? "\0" : "\\R")) {
+            if (!entry.isEmpty())
+                res.add(entry);
+        }
+        return res;
+    }
+
+    private static void copy(@NotNull InputStream inputStream, @NotNull ByteArrayOutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1)
+            outputStream.write(buffer, 0, read);
+    }
+}
@@ -0,0 +1,333 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.maven.model.Model;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Persists the parts of the poms which are relevant for the dependency graph (see {@link GraphModels}) as well as the resolved graph itself in a compact binary file.
+ * Each pom is fingerprinted by its size, modification time and SHA-256 hash. As long as size and modification time are unchanged,
+ * the pom is not read at all. If only the modification time changed, the pom is read and hashed but not parsed again.
+ * The cached graph is only reused if the list of projects is the same and none of the poms changed.
+ */
+public class GraphCache {
+    private static final int MAGIC = 0x4D424743; // MBGC
+    private static final int FORMAT_VERSION = 4;
+
+    @NotNull
+    private final File cacheFile;
+    private final ConcurrentMap<String, PomEntry> loadedEntries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PomEntry> usedEntries = new ConcurrentHashMap<>();
+    private volatile boolean pomsChanged;
+    @Nullable
+    private List<String> projectPaths;
+    @Nullable
+    private List<int[]> dependencyIndices;
+
+    private GraphCache(@NotNull File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Reads the cache file. If the file does not exist or cannot be read, an empty cache is returned.
+     *
+     * @param cacheFile The file to read the cache from and to save it to
+     * @return The cache
+     */
+    @NotNull
+    public static GraphCache load(@NotNull File cacheFile) {
+        return load(cacheFile, null);
+    }
+
+    /**
+     * Reads the cache file. If the file does not exist or cannot be read, an empty cache is returned.
+     *
+     * @param cacheFile     The file to read the cache from and to save it to
+     * @param eventListener Receives a warning if the cache file cannot be read, may be {@code null}
+     * @return The cache
+     */
+    @NotNull
+    public static GraphCache load(@NotNull File cacheFile, @Nullable BuildEventListener eventListener) {
+        GraphCache res = new GraphCache(cacheFile);
+        if (!cacheFile.exists())
+            return res;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION)
+                return res;
+
+            StringInterner interner = new StringInterner();
+            int pomCount = GraphModels.readLength(input);
+            for (int i = 0; i < pomCount; i++) {
+                PomEntry entry = PomEntry.read(input, interner);
+                res.loadedEntries.put(entry.path, entry);
+            }
+
+            int projectCount = GraphModels.readLength(input);
+            List<String> projectPaths = new ArrayList<>(projectCount);
+            List<int[]> dependencyIndices = new ArrayList<>(projectCount);
+            for (int i = 0; i < projectCount; i++) {
+                projectPaths.add(GraphModels.readString(input));
+                int[] indices = new int[GraphModels.readLength(input)];
+                for (int j = 0; j < indices.length; j++) {
+                    indices[j] = input.readInt();
+                    if (indices[j] < 0 || indices[j] >= projectCount)
+                        throw new IOException("Invalid project index " + indices[j]);
+                }
+                dependencyIndices.add(indices);
+            }
+            res.projectPaths = projectPaths;
+            res.dependencyIndices = dependencyIndices;
+        } catch (IOException e) {
+            if (eventListener != null)
+                eventListener.onEvent(BuildEvent.warning(null, "(" + cacheFile + "): Unable to read the graph cache, ignoring it: " + e.getMessage()));
+            res.loadedEntries.clear();
+            res.projectPaths = null;
+            res.dependencyIndices = null;
+        }
+
+        return res;
+    }
+
+    /**
+     * @param workspaceFolder The folder which contains the projects
+     * @return The default cache file of the specified workspace, which is located in the user home directory.
+     * Each workspace gets its own file, as the cached graph is only reused for the same projects.
+     */
+    @NotNull
+    public static File getDefaultCacheFile(@NotNull File workspaceFolder) {
+        String path;
+        try {
+            path = workspaceFolder.getCanonicalPath();
+        } catch (IOException e) {
+            path = workspaceFolder.getAbsolutePath();
+        }
+        String fileName = ProjectFingerprinter.toHex(hash(path.getBytes(StandardCharsets.UTF_8))).substring(0, 16) + ".cache";
+        return new File(System.getProperty("user.home")).toPath().resolve(".mavenbatchexecutor").resolve("graphCache").resolve(fileName).toFile();
+    }
+
+    @NotNull
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * @param pomFile The pom to look up
+     * @return A model which contains the graph relevant parts of the pom or {@code null} if the pom is not cached or has changed
+     */
+    @Nullable
+    Model getUnchangedModel(@NotNull File pomFile) throws IOException {
+        String path = pomFile.getCanonicalPath();
+        PomEntry entry = loadedEntries.get(path);
+        if (entry == null) {
+            pomsChanged = true;
+            return null;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(pomFile.toPath(), BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (attributes.size() != entry.size) {
+            pomsChanged = true;
+            return null;
+        }
+
+        if (lastModified != entry.lastModified) {
+            if (!Arrays.equals(hash(Files.readAllBytes(pomFile.toPath())), entry.hash)) {
+                pomsChanged = true;
+                return null;
+            }
+            entry = new PomEntry(path, entry.size, lastModified, entry.hash, entry.model);
+        }
+
+        usedEntries.put(path, entry);
+        return entry.toModel(pomFile);
+    }
+
+    /**
+     * Keeps the cache entry of a pom which was served from memory and therefore not checked by {@link #getUnchangedModel(File)}.
+     */
+    void markUsed(@NotNull File pomFile) throws IOException {
+        PomEntry entry = loadedEntries.get(pomFile.getCanonicalPath());
+        if (entry == null)
+            pomsChanged = true;
+        else
+            usedEntries.putIfAbsent(entry.path, entry);
+    }
+
+    /**
+     * Notes that a pom does not exist (anymore). If it was cached, the cached graph is outdated.
+     */
+    void markMissing(@NotNull File pomFile) throws IOException {
+        if (loadedEntries.containsKey(pomFile.getCanonicalPath()))
+            pomsChanged = true;
+    }
+
+    /**
+     * Records the fingerprint and the graph relevant parts of a freshly parsed pom.
+     *
+     * @param pomFile The pom file
+     * @param content The content of the pom file which was parsed
+     * @param model   The graph relevant parts of the parsed model, see {@link GraphModels#reduce(Model, StringInterner)}
+     */
+    void put(@NotNull File pomFile, @NotNull byte[] content, @NotNull Model model) throws IOException {
+        String path = pomFile.getCanonicalPath();
+        long lastModified = Files.getLastModifiedTime(pomFile.toPath()).toMillis();
+        usedEntries.put(path, new PomEntry(path, content.length, lastModified, hash(content), model));
+    }
+
+    /**
+     * @param projects The projects in the order in which they were passed to {@link #setDependencyIndices(List, List)}
+     * @return The cached dependency indices of each project or {@code null} if the graph is not cached or any pom has changed
+     */
+    @Nullable
+    List<int[]> getDependencyIndices(@NotNull List<Project> projects) {
+        if (pomsChanged || projectPaths == null || dependencyIndices == null)
+            return null;
+        if (!projectPaths.equals(getCanonicalPaths(projects)))
+            return null;
+        return dependencyIndices;
+    }
+
+    void setDependencyIndices(@NotNull List<Project> projects, @NotNull List<int[]> dependencyIndices) {
+        this.projectPaths = getCanonicalPaths(projects);
+        this.dependencyIndices = dependencyIndices;
+    }
+
+    /**
+     * Writes all poms used since this cache was loaded and the current graph to the cache file.
+     */
+    public void save() throws IOException {
+        File parentFolder = cacheFile.getAbsoluteFile().getParentFile();
+        if (parentFolder != null)
+            Files.createDirectories(parentFolder.toPath());
+
+        Path tempFile = cacheFile.toPath().resolveSibling(cacheFile.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+
+            output.writeInt(usedEntries.size());
+            for (PomEntry entry : usedEntries.values())
+                entry.write(output);
+
+            if (projectPaths == null || dependencyIndices == null) {
+                output.writeInt(0);
+            } else {
+                output.writeInt(projectPaths.size());
+                for (int i = 0; i < projectPaths.size(); i++) {
+                    GraphModels.writeString(output, projectPaths.get(i));
+                    int[] indices = dependencyIndices.get(i);
+                    output.writeInt(indices.length);
+                    for (int index : indices)
+                        output.writeInt(index);
+                }
+            }
+        }
+        Files.move(tempFile, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @NotNull
+    private static List<String> getCanonicalPaths(@NotNull List<Project> projects) {
+        List<String> res = new ArrayList<>(projects.size());
+        for (Project project : projects) {
+            try {
+                res.add(project.getProjectFolder().getCanonicalPath());
+            } catch (IOException e) {
+                res.add(project.getProjectFolder().getAbsolutePath());
+            }
+        }
+        return res;
+    }
+
+    @NotNull
+    static byte[] hash(@NotNull byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be present in every java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class PomEntry {
+        @NotNull
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        @NotNull
+        private final byte[] hash;
+        @NotNull
+        private final Model model;
+
+        PomEntry(@NotNull String path, long size, long lastModified, @NotNull byte[] hash, @NotNull Model model) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.model = model;
+        }
+
+        @NotNull
+        static PomEntry read(@NotNull DataInputStream input, @NotNull StringInterner interner) throws IOException {
+            String path = GraphModels.readString(input);
+            long size = input.readLong();
+            long lastModified = input.readLong();
+            byte[] hash = new byte[GraphModels.readLength(input)];
+            input.readFully(hash);
+            Model model = GraphModels.read(input, new File(path), interner);
+            return new PomEntry(path, size, lastModified, hash, model);
+        }
+
+        void write(@NotNull DataOutputStream output) throws IOException {
+            GraphModels.writeString(output, path);
+            output.writeLong(size);
+            output.writeLong(lastModified);
+            output.writeInt(hash.length);
+            output.write(hash);
+            GraphModels.write(model, output);
+        }
+
+        /**
+         * @return A copy of the cached model, so that callers cannot modify the cache
+         */
+        @NotNull
+        Model toModel(@NotNull File pomFile) {
+            Model res = model.clone();
+            res.setPomFile(pomFile);
+            return res;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Reduces poms to the parts which are relevant for the dependency graph: coordinates, packaging, parent, modules, properties,
+ * dependencies and managed dependencies. Everything else (build, plugins, profiles, reporting, ...) is dropped right after parsing,
+ * so that the models of very large workspaces fit into a small heap. Strings are interned, as most poms share their groupId and versions.
+ * The same parts are persisted by the {@link GraphCache}.
+ */
+class GraphModels {
+    private GraphModels() {
+        throw new AssertionError("Cannot create instances of this class");
+    }
+
+    /**
+     * @param model    The fully parsed pom
+     * @param interner Deduplicates the strings of the reduced model
+     * @return A new model which contains the graph relevant parts of the specified model only
+     */
+    @NotNull
+    static Model reduce(@NotNull Model model, @NotNull StringInterner interner) {
+        Model res = new Model();
+        res.setPomFile(model.getPomFile());
+        res.setGroupId(interner.intern(model.getGroupId()));
+        res.setArtifactId(interner.intern(model.getArtifactId()));
+        res.setVersion(interner.intern(model.getVersion()));
+        res.setPackaging(interner.intern(model.getPackaging()));
+        if (model.getParent() != null) {
+            Parent parent = new Parent();
+            parent.setGroupId(interner.intern(model.getParent().getGroupId()));
+            parent.setArtifactId(interner.intern(model.getParent().getArtifactId()));
+            parent.setVersion(interner.intern(model.getParent().getVersion()));
+            res.setParent(parent);
+        }
+        for (String module : model.getModules())
+            res.addModule(module);
+        for (String name : model.getProperties().stringPropertyNames())
+            res.addProperty(interner.intern(name), interner.intern(model.getProperties().getProperty(name)));
+        for (Dependency dependency : model.getDependencies())
+            res.addDependency(reduce(dependency, interner));
+        if (model.getDependencyManagement() != null && !model.getDependencyManagement().getDependencies().isEmpty()) {
+            DependencyManagement dependencyManagement = new DependencyManagement();
+            for (Dependency dependency : model.getDependencyManagement().getDependencies())
+                dependencyManagement.addDependency(reduce(dependency, interner));
+            res.setDependencyManagement(dependencyManagement);
+        }
+        return res;
+    }
+
+    @NotNull
+    private static Dependency reduce(@NotNull Dependency dependency, @NotNull StringInterner interner) {
+        Dependency res = new Dependency();
+        res.setGroupId(interner.intern(dependency.getGroupId()));
+        res.setArtifactId(interner.intern(dependency.getArtifactId()));
+        res.setVersion(interner.intern(dependency.getVersion()));
+        res.setType(interner.intern(dependency.getType()));
+        res.setScope(interner.intern(dependency.getScope()));
+        return res;
+    }
+
+    /**
+     * Writes the graph relevant parts of the specified model, see {@link #read(DataInputStream, File, StringInterner)}.
+     */
+    static void write(@NotNull Model model, @NotNull DataOutputStream output) throws IOException {
+        writeNullableString(output, model.getGroupId());
+        writeNullableString(output, model.getArtifactId());
+        writeNullableString(output, model.getVersion());
+        writeNullableString(output, model.getPackaging());
+        Parent parent = model.getParent();
+        output.writeBoolean(parent != null);
+        if (parent != null) {
+            writeNullableString(output, parent.getGroupId());
+            writeNullableString(output, parent.getArtifactId());
+            writeNullableString(output, parent.getVersion());
+        }
+
+        output.writeInt(model.getModules().size());
+        for (String module : model.getModules())
+            writeString(output, module);
+
+        output.writeInt(model.getProperties().size());
+        for (String name : model.getProperties().stringPropertyNames()) {
+            writeString(output, name);
+            writeString(output, model.getProperties().getProperty(name));
+        }
+
+        writeDependencies(output, model.getDependencies());
+        writeDependencies(output, model.getDependencyManagement() == null ? null : model.getDependencyManagement().getDependencies());
+    }
+
+    /**
+     * @param pomFile The pom the model was read from
+     * @return A model which contains the parts written by {@link #write(Model, DataOutputStream)}
+     */
+    @NotNull
+    static Model read(@NotNull DataInputStream input, @NotNull File pomFile, @NotNull StringInterner interner) throws IOException {
+        Model res = new Model();
+        res.setPomFile(pomFile);
+        res.setGroupId(readNullableString(input, interner));
+        res.setArtifactId(readNullableString(input, interner));
+        res.setVersion(readNullableString(input, interner));
+        res.setPackaging(readNullableString(input, interner));
+        if (input.readBoolean()) {
+            Parent parent = new Parent();
+            parent.setGroupId(readNullableString(input, interner));
+            parent.setArtifactId(readNullableString(input, interner));
+            parent.setVersion(readNullableString(input, interner));
+            res.setParent(parent);
+        }
+
+        int moduleCount = readLength(input);
+        for (int i = 0; i < moduleCount; i++)
+            res.addModule(readString(input));
+
+        int propertyCount = readLength(input);
+        for (int i = 0; i < propertyCount; i++)
+            res.addProperty(interner.intern(readString(input)), interner.intern(readString(input)));
+
+        for (Dependency dependency : readDependencies(input, interner))
+            res.addDependency(dependency);
+        Dependency[] managedDependencies = readDependencies(input, interner);
+        if (managedDependencies.length > 0) {
+            DependencyManagement dependencyManagement = new DependencyManagement();
+            for (Dependency dependency : managedDependencies)
+                dependencyManagement.addDependency(dependency);
+            res.setDependencyManagement(dependencyManagement);
+        }
+        return res;
+    }
+
+    private static void writeDependencies(@NotNull DataOutputStream output, @Nullable List<Dependency> dependencies) throws IOException {
+        if (dependencies == null) {
+            output.writeInt(0);
+            return;
+        }
+        output.writeInt(dependencies.size());
+        for (Dependency dependency : dependencies) {
+            writeNullableString(output, dependency.getGroupId());
+            writeNullableString(output, dependency.getArtifactId());
+            writeNullableString(output, dependency.getVersion());
+            writeNullableString(output, dependency.getType());
+            writeNullableString(output, dependency.getScope());
+        }
+    }
+
+    @NotNull
+    private static Dependency[] readDependencies(@NotNull DataInputStream input, @NotNull StringInterner interner) throws IOException {
+        Dependency[] res = new Dependency[readLength(input)];
+        for (int i = 0; i < res.length; i++) {
+            Dependency dependency = new Dependency();
+            dependency.setGroupId(readNullableString(input, interner));
+            dependency.setArtifactId(readNullableString(input, interner));
+            dependency.setVersion(readNullableString(input, interner));
+            String type = readNullableString(input, interner);
+            if (type != null)
+                dependency.setType(type);
+            dependency.setScope(readNullableString(input, interner));
+            res[i] = dependency;
+        }
+        return res;
+    }
+
+    @Nullable
+    private static String readNullableString(@NotNull DataInputStream input, @NotNull StringInterner interner) throws IOException {
+        return input.readBoolean() ? interner.intern(readString(input)) : null;
+    }
+
+    private static void writeNullableString(@NotNull DataOutputStream output, @Nullable String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null)
+            writeString(output, value);
+    }
+
+    /**
+     * Writes the string as length prefixed UTF-8. Unlike {@link DataOutputStream#writeUTF(String)}, this is not limited to 64 KB.
+     */
+    static void writeString(@NotNull DataOutputStream output, @NotNull String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads the length of an array, a list or a string and checks that the rest of the input can hold that many elements,
+     * as each element takes at least one byte. This way, damaged files fail with an {@link IOException} instead of huge allocations.
+     * {@link DataInputStream#available()} must return the remaining size of the input, which is the case for files.
+     */
+    static int readLength(@NotNull DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > input.available())
+            throw new IOException("Invalid length " + length);
+        return length;
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}
+     */
+    @NotNull
+    static String readString(@NotNull DataInputStream input) throws IOException {
+        byte[] bytes = new byte[readLength(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.maven.shared.invoker.*;
+import org.apache.maven.shared.utils.cli.CommandLineException;
+import org.apache.maven.shared.utils.cli.CommandLineTimeOutException;
+import org.apache.maven.shared.utils.cli.Commandline;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The default {@link BuildBackend} which forks a new maven process for every build.
+ * The command line is assembled by the maven invoker, but the process is started and supervised by this class,
+ * so that a build can be stopped including all processes it started (e. g. surefire forks), see {@link #kill(Project)}.
+ * The timeout of the request ({@link InvocationRequest#getTimeoutInSeconds()}) is honored in the same way.
+ */
+public class InvokerBackend implements BuildBackend {
+    // the time to wait for the remaining output after the maven process ended
+    private static final long OUTPUT_DRAIN_TIMEOUT_MILLIS = 5000;
+
+    private final ConcurrentMap<Project, Process> runningProcesses = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile BuildEventListener eventListener;
+
+    /**
+     * @return The listener which receives warnings about output which could not be handled or {@code null} if warnings are not reported.
+     * The {@link Executor} sets its event publisher if no listener is set.
+     */
+    @Nullable
+    public BuildEventListener getEventListener() {
+        return eventListener;
+    }
+
+    public void setEventListener(@Nullable BuildEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    @NotNull
+    @Override
+    public InvocationResult execute(@NotNull Project project, @NotNull InvocationRequest request) throws MavenInvocationException {
+        Commandline commandLine;
+        try {
+            commandLine = new MavenCommandLineBuilder().build(request);
+        } catch (CommandLineConfigurationException e) {
+            throw new MavenInvocationException("Error configuring command-line. Reason: " + e.getMessage(), e);
+        }
+
+        Process process;
+        try {
+            process = commandLine.execute();
+        } catch (CommandLineException e) {
+            return new ProcessInvocationResult(Integer.MIN_VALUE, e);
+        }
+
+        runningProcesses.put(project, process);
+        try {
+            return supervise(project, process, request);
+        } finally {
+            runningProcesses.remove(project, process);
+        }
+    }
+
+    @Override
+    public boolean kill(@NotNull Project project) {
+        Process process = runningProcesses.get(project);
+        if (process == null)
+            return false;
+        ProcessTrees.destroyForcibly(process);
+        return true;
+    }
+
+    @NotNull
+    private InvocationResult supervise(@NotNull Project project, @NotNull Process process, @NotNull InvocationRequest request) {
+        Thread outputPump = startPump(project, process.getInputStream(), request.getOutputHandler(new SystemOutHandler()), "output");
+        Thread errorPump = startPump(project, process.getErrorStream(), request.getErrorHandler(new SystemOutHandler()), "error");
+        try {
+            process.getOutputStream().close();
+        } catch (IOException e) {
+            // maven does not read from the standard input anyway
+        }
+
+        CommandLineException executionException = null;
+        try {
+            if (request.getTimeoutInSeconds() > 0) {
+                if (!process.waitFor(request.getTimeoutInSeconds(), TimeUnit.SECONDS)) {
+                    ProcessTrees.destroyForcibly(process);
+                    executionException = new CommandLineTimeOutException("The build did not finish within " + request.getTimeoutInSeconds() + " seconds, process killed.", null);
+                }
+            }
+            process.waitFor();
+            outputPump.join(OUTPUT_DRAIN_TIMEOUT_MILLIS);
+            errorPump.join(OUTPUT_DRAIN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            ProcessTrees.destroyForcibly(process);
+            Thread.currentThread().interrupt();
+            return new ProcessInvocationResult(Integer.MIN_VALUE, new CommandLineException("Interrupted while waiting for the build, process killed.", e));
+        }
+
+        return new ProcessInvocationResult(process.exitValue(), executionException);
+    }
+
+    @NotNull
+    private Thread startPump(@NotNull Project project, @NotNull InputStream inputStream, @NotNull InvocationOutputHandler handler, @NotNull String streamName) {
+        Thread res = new Thread(() -> {
+            boolean handlerFailed = false;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (handlerFailed)
+                        continue;
+                    try {
+                        handler.consumeLine(line);
+                    } catch (IOException | RuntimeException e) {
+                        // keep draining the stream, otherwise the build would block once the pipe is full
+                        handlerFailed = true;
+                        BuildEventListener listener = getEventListener();
+                        if (listener != null)
+                            listener.onEvent(BuildEvent.warning(project, "Unable to handle the build " + streamName + ", discarding the rest of it: " + e.getMessage()));
+                    }
+                }
+            } catch (IOException e) {
+                // the stream was closed as the process ended
+            }
+        }, "batch-build-" + streamName + "-pump");
+        res.setDaemon(true);
+        res.start();
+        return res;
+    }
+
+    private static class ProcessInvocationResult implements InvocationResult {
+        private final int exitCode;
+        @Nullable
+        private final CommandLineException executionException;
+
+        ProcessInvocationResult(int exitCode, @Nullable CommandLineException executionException) {
+            this.exitCode = exitCode;
+            this.executionException = executionException;
+        }
+
+        @Override
+        public CommandLineException getExecutionException() {
+            return executionException;
+        }
+
+        @Override
+        public int getExitCode() {
+            return exitCode;
+        }
+    }
+}
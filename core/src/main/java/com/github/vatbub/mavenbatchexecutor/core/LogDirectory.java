@@ -0,0 +1,129 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * A central folder for build logs. Every run gets its own subfolder which is named after the time the run started.
+ * Only the subfolders of the most recent runs are kept, older ones are deleted when a new run starts.
+ */
+public class LogDirectory {
+    @NotNull
+    private final File directory;
+    private final int retention;
+
+    /**
+     * @param directory The folder which contains the subfolders of the runs
+     * @param retention The number of runs to keep, including the current one
+     */
+    public LogDirectory(@NotNull File directory, int retention) {
+        if (retention < 1)
+            throw new IllegalArgumentException("retention must be at least 1");
+        this.directory = directory;
+        this.retention = retention;
+    }
+
+    /**
+     * @return The default log directory which is located in the user home directory
+     */
+    @NotNull
+    public static File getDefaultDirectory() {
+        return new File(System.getProperty("user.home")).toPath().resolve(".mavenbatchexecutor").resolve("logs").toFile();
+    }
+
+    @NotNull
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getRetention() {
+        return retention;
+    }
+
+    /**
+     * Creates the subfolder for a new run and deletes the subfolders of old runs so that at most {@link #getRetention()} runs are kept.
+     *
+     * @return The subfolder of the new run
+     */
+    @NotNull
+    public RunFolder createRunFolder() throws IOException {
+        Files.createDirectories(directory.toPath());
+        String baseName = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        Path runPath = directory.toPath().resolve(baseName);
+        for (int i = 1; Files.exists(runPath); i++)
+            runPath = directory.toPath().resolve(baseName + "-" + i);
+        Files.createDirectory(runPath);
+
+        deleteOldRuns();
+        return new RunFolder(runPath.toFile());
+    }
+
+    private void deleteOldRuns() throws IOException {
+        File[] runFolders = directory.listFiles(File::isDirectory);
+        if (runFolders == null || runFolders.length <= retention)
+            return;
+
+        // folder names start with the start time of the run, so they sort chronologically
+        Arrays.sort(runFolders, Comparator.comparing(File::getName));
+        for (int i = 0; i < runFolders.length - retention; i++)
+            FileTrees.deleteRecursively(runFolders[i].toPath());
+    }
+
+    /**
+     * The log folder of a single run.
+     */
+    public static class RunFolder {
+        @NotNull
+        private final File folder;
+        private final Set<String> usedNames = new HashSet<>();
+
+        private RunFolder(@NotNull File folder) {
+            this.folder = folder;
+        }
+
+        @NotNull
+        public File getFolder() {
+            return folder;
+        }
+
+        /**
+         * @param project   The project to get the log file for
+         * @param extension The file extension of the log file, e. g. {@code .log.gz}
+         * @return A log file for the specified project which is named after the project folder and is unique within this run
+         */
+        @NotNull
+        public synchronized File getLogFile(@NotNull Project project, @NotNull String extension) {
+            String baseName = project.getProjectFolder().getName();
+            String name = baseName;
+            for (int i = 1; !usedNames.add(name); i++)
+                name = baseName + "-" + i;
+            return new File(folder, name + extension);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+
+/**
+ * A {@link BuildBackend} which runs the builds through the <a href="https://github.com/apache/maven-mvnd">maven daemon (mvnd)</a>.
+ * The mvnd client hands each build to a long-lived daemon JVM which keeps its plugin classloaders and JIT-compiled code
+ * between builds, so only the first build pays for JVM startup and warm-up.
+ * The daemons keep running after the batch so that subsequent batches start warm as well.
+ * Killing a build (see {@link #kill(Project)}) stops the mvnd client which makes the daemon abort the build.
+ */
+public class MavenDaemonBackend extends InvokerBackend {
+    @NotNull
+    private final File mvndExecutable;
+
+    /**
+     * Uses the mvnd executable which is found on the {@code PATH}.
+     *
+     * @throws IllegalStateException If mvnd cannot be found on the {@code PATH}
+     */
+    public MavenDaemonBackend() {
+        this(findOnPath());
+    }
+
+    /**
+     * @param mvndExecutable The mvnd client executable, e. g. {@code <mvnd home>/bin/mvnd}
+     */
+    public MavenDaemonBackend(@NotNull File mvndExecutable) {
+        this.mvndExecutable = mvndExecutable.getAbsoluteFile();
+    }
+
+    @NotNull
+    public File getMvndExecutable() {
+        return mvndExecutable;
+    }
+
+    @NotNull
+    @Override
+    public InvocationResult execute(@NotNull Project project, @NotNull InvocationRequest request) throws MavenInvocationException {
+        request.setMavenExecutable(getMvndExecutable());
+        return super.execute(project, request);
+    }
+
+    @NotNull
+    private static File findOnPath() {
+        String path = System.getenv("PATH");
+        boolean windows = System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+        String[] executableNames = windows ? new String[]{"mvnd.cmd", "mvnd.exe"} : new String[]{"mvnd"};
+        if (path != null) {
+            for (String folder : path.split(File.pathSeparator)) {
+                File executable = findIn(folder, executableNames);
+                if (executable != null)
+                    return executable;
+            }
+        }
+        throw new IllegalStateException("mvnd could not be found on the PATH");
+    }
+
+    @Nullable
+    private static File findIn(@NotNull String folder, @NotNull String[] executableNames) {
+        for (String executableName : executableNames) {
+            File executable = new File(folder, executableName);
+            if (executable.isFile() && executable.canExecute())
+                return executable;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,213 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares maven versions and matches them against version ranges such as {@code [1.0,2.0)}.
+ * Follows the ordering of maven's {@code ComparableVersion} for the common cases: numeric parts are compared as numbers,
+ * well known qualifiers are ordered {@code alpha < beta < milestone < rc < snapshot < (release) < sp}
+ * and unknown qualifiers come after all of them in alphabetical order.
+ */
+class MavenVersions {
+    private static final List<String> QUALIFIERS = Arrays.asList("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+    private static final int RELEASE_RANK = QUALIFIERS.indexOf("");
+
+    private MavenVersions() {
+        throw new AssertionError("Cannot create instances of this class");
+    }
+
+    /**
+     * @return {@code true} if the specified version is a range like {@code [1.0,2.0)} rather than a single version
+     */
+    static boolean isRange(@NotNull String version) {
+        return version.startsWith("[") || version.startsWith("(");
+    }
+
+    /**
+     * @param version The version to check
+     * @param range   One or more ranges separated by commas, e. g. {@code [1.0,2.0)}, {@code [1.5]} or {@code (,1.0],[1.2,)}
+     * @return {@code true} if the version lies within one of the ranges. Malformed ranges contain no version.
+     */
+    static boolean isInRange(@NotNull String version, @NotNull String range) {
+        int start = 0;
+        while (start < range.length()) {
+            char lowerBracket = range.charAt(start);
+            if (lowerBracket != '[' && lowerBracket != '(')
+                return false;
+            int end = indexOfUpperBracket(range, start + 1);
+            if (end < 0)
+                return false;
+            if (isInRestriction(version, lowerBracket == '[', range.substring(start + 1, end), range.charAt(end) == ']'))
+                return true;
+            start = end + 1;
+            // skip the comma between two restrictions
+            while (start < range.length() && (range.charAt(start) == ',' || Character.isWhitespace(range.charAt(start))))
+                start++;
+        }
+        return false;
+    }
+
+    private static int indexOfUpperBracket(@NotNull String range, int fromIndex) {
+        for (int i = fromIndex; i < range.length(); i++) {
+            if (range.charAt(i) == ']' || range.charAt(i) == ')')
+                return i;
+        }
+        return -1;
+    }
+
+    private static boolean isInRestriction(@NotNull String version, boolean lowerInclusive, @NotNull String bounds, boolean upperInclusive) {
+        int comma = bounds.indexOf(',');
+        if (comma < 0)
+            return lowerInclusive && upperInclusive && compare(version, bounds.trim()) == 0;
+
+        String lowerBound = bounds.substring(0, comma).trim();
+        String upperBound = bounds.substring(comma + 1).trim();
+        if (!lowerBound.isEmpty()) {
+            int comparison = compare(version, lowerBound);
+            if (comparison < 0 || (comparison == 0 && !lowerInclusive))
+                return false;
+        }
+        if (!upperBound.isEmpty()) {
+            int comparison = compare(version, upperBound);
+            return comparison < 0 || (comparison == 0 && upperInclusive);
+        }
+        return true;
+    }
+
+    /**
+     * @return A negative number, zero or a positive number if {@code version1} is lower than, equal to or greater than {@code version2}
+     */
+    static int compare(@NotNull String version1, @NotNull String version2) {
+        List<String> items1 = parse(version1);
+        List<String> items2 = parse(version2);
+        for (int i = 0; i < Math.max(items1.size(), items2.size()); i++) {
+            int comparison = compareItems(i < items1.size() ? items1.get(i) : null, i < items2.size() ? items2.get(i) : null);
+            if (comparison != 0)
+                return comparison;
+        }
+        return 0;
+    }
+
+    /**
+     * Splits a version into its numeric parts and qualifiers, e. g. {@code 1.2-rc1} into {@code 1, 2, rc, 1}.
+     * Parts which do not change the version ({@code 0}, {@code final}, {@code ga}, {@code release}) are removed at the end
+     * of the version and, like maven does, at the end of each part that is followed by a {@code -} or by a change between digits and letters,
+     * e. g. {@code 1.0-rc1} becomes {@code 1, rc, 1}, just like {@code 1-rc1}.
+     */
+    @NotNull
+    private static List<String> parse(@NotNull String version) {
+        List<String> res = new ArrayList<>();
+        String lowerCaseVersion = version.toLowerCase(Locale.ROOT);
+        int start = 0;
+        // maven starts a nested list at each hyphen and transition, the items before it are normalized on their own
+        int segmentStart = 0;
+        for (int i = 1; i <= lowerCaseVersion.length(); i++) {
+            boolean end = i == lowerCaseVersion.length();
+            char current = end ? 0 : lowerCaseVersion.charAt(i);
+            boolean separator = current == '.' || current == '-' || current == '_';
+            boolean transition = !end && !separator && i > start
+                    && Character.isDigit(current) != Character.isDigit(lowerCaseVersion.charAt(i - 1));
+            if (end || separator || transition) {
+                if (i > start)
+                    res.add(normalize(lowerCaseVersion.substring(start, i)));
+                if (current == '-' || transition) {
+                    removeTrailingNullItems(res, segmentStart);
+                    segmentStart = res.size();
+                }
+                start = separator ? i + 1 : i;
+            }
+        }
+
+        removeTrailingNullItems(res, 0);
+        return res;
+    }
+
+    private static void removeTrailingNullItems(@NotNull List<String> items, int fromIndex) {
+        while (items.size() > fromIndex && isNullItem(items.get(items.size() - 1)))
+            items.remove(items.size() - 1);
+    }
+
+    @NotNull
+    private static String normalize(@NotNull String item) {
+        if (isNumber(item))
+            return item.replaceFirst("^0+(?=.)", "");
+        switch (item) {
+            case "a":
+                return "alpha";
+            case "b":
+                return "beta";
+            case "m":
+                return "milestone";
+            case "cr":
+                return "rc";
+            case "ga":
+            case "final":
+            case "release":
+                return "";
+            default:
+                return item;
+        }
+    }
+
+    private static boolean isNullItem(@NotNull String item) {
+        return item.equals("0") || item.isEmpty();
+    }
+
+    private static boolean isNumber(@NotNull String item) {
+        return !item.isEmpty() && Character.isDigit(item.charAt(0));
+    }
+
+    private static int compareItems(String item1, String item2) {
+        if (item1 == null && item2 == null)
+            return 0;
+        if (item1 == null)
+            return -compareItems(item2, null);
+        if (isNumber(item1)) {
+            if (item2 == null)
+                return item1.equals("0") ? 0 : 1;
+            if (!isNumber(item2))
+                return 1;
+            // compare the numbers without parsing them, they may be arbitrarily long
+            if (item1.length() != item2.length())
+                return Integer.compare(item1.length(), item2.length());
+            return item1.compareTo(item2);
+        }
+        if (item2 == null)
+            return Integer.compare(getRank(item1), RELEASE_RANK);
+        if (isNumber(item2))
+            return -1;
+        int comparison = Integer.compare(getRank(item1), getRank(item2));
+        return comparison != 0 ? comparison : item1.compareTo(item2);
+    }
+
+    private static int getRank(@NotNull String qualifier) {
+        int rank = QUALIFIERS.indexOf(qualifier);
+        return rank < 0 ? QUALIFIERS.size() : rank;
+    }
+}
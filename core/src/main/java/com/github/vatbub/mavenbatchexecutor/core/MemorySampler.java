@@ -0,0 +1,207 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Periodically measures the memory usage (resident set size) of the processes which build the projects.
+ * A build is identified by the working directory of the child process of this JVM and includes all descendants of that child.
+ * As the modules of a reactor are built from the root of the reactor, modules which are built at the same time cannot be told apart:
+ * each of them is assigned the largest usage among the builds in that folder.
+ * <p>
+ * This works on Linux only as it reads {@code /proc}. On other systems, no memory usage is reported.
+ * Builds which do not run in child processes (e. g. builds in a maven daemon) are not measured either.
+ */
+class MemorySampler implements Closeable {
+    private static final Path PROC = Paths.get("/proc");
+    private static final long SAMPLE_INTERVAL_MILLIS = 500;
+
+    private final ConcurrentMap<Project, String> foldersByProject = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Project, Long> peakKilobytes = new ConcurrentHashMap<>();
+    @Nullable
+    private final Thread samplerThread;
+    @Nullable
+    private final String ownPid;
+
+    MemorySampler() {
+        this.ownPid = getOwnPid();
+        if (ownPid == null) {
+            this.samplerThread = null;
+            return;
+        }
+        this.samplerThread = new Thread(this::samplerLoop, "batch-build-memory-sampler");
+        this.samplerThread.setDaemon(true);
+        this.samplerThread.start();
+    }
+
+    /**
+     * @return {@code true} if the memory usage of builds can be measured on this system
+     */
+    boolean isSupported() {
+        return samplerThread != null;
+    }
+
+    /**
+     * Starts measuring the build of the specified project.
+     *
+     * @param workingDirectory The folder in which the build process runs, i. e. the root of the reactor for a {@link ModuleProject}
+     */
+    void register(@NotNull Project project, @NotNull File workingDirectory) {
+        if (!isSupported())
+            return;
+        try {
+            foldersByProject.put(project, workingDirectory.getCanonicalPath());
+        } catch (IOException e) {
+            foldersByProject.put(project, workingDirectory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Stops measuring the build of the specified project.
+     *
+     * @return The peak memory usage of the build in megabytes or {@code -1} if it could not be measured
+     */
+    long unregister(@NotNull Project project) {
+        foldersByProject.remove(project);
+        Long peak = peakKilobytes.remove(project);
+        return peak == null ? -1 : (peak + 1023) / 1024;
+    }
+
+    @Override
+    public void close() {
+        if (samplerThread != null)
+            samplerThread.interrupt();
+    }
+
+    private void samplerLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            if (!foldersByProject.isEmpty())
+                sample();
+            try {
+                Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void sample() {
+        Map<String, List<Project>> projectsByFolder = new HashMap<>();
+        for (Map.Entry<Project, String> entry : foldersByProject.entrySet())
+            projectsByFolder.computeIfAbsent(entry.getValue(), key -> new ArrayList<>()).add(entry.getKey());
+
+        Map<String, List<String>> children = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(PROC)) {
+            for (Path processPath : stream) {
+                String pid = processPath.getFileName().toString();
+                if (!isNumeric(pid))
+                    continue;
+                String parentPid = readParentPid(processPath);
+                if (parentPid != null)
+                    children.computeIfAbsent(parentPid, key -> new ArrayList<>()).add(pid);
+            }
+        } catch (IOException e) {
+            return;
+        }
+
+        for (String childPid : children.getOrDefault(ownPid, Collections.emptyList())) {
+            List<Project> projects;
+            try {
+                projects = projectsByFolder.get(Files.readSymbolicLink(PROC.resolve(childPid).resolve("cwd")).toString());
+            } catch (IOException | UnsupportedOperationException e) {
+                continue;
+            }
+            if (projects == null)
+                continue;
+
+            long totalKilobytes = 0;
+            Deque<String> queue = new ArrayDeque<>();
+            queue.add(childPid);
+            while (!queue.isEmpty()) {
+                String pid = queue.poll();
+                totalKilobytes += readResidentKilobytes(PROC.resolve(pid));
+                queue.addAll(children.getOrDefault(pid, Collections.emptyList()));
+            }
+            for (Project project : projects)
+                peakKilobytes.merge(project, totalKilobytes, Math::max);
+        }
+    }
+
+    @Nullable
+    private static String readParentPid(@NotNull Path processPath) {
+        try {
+            String stat = new String(Files.readAllBytes(processPath.resolve("stat")), StandardCharsets.UTF_8);
+            // the process name is enclosed in parentheses and may contain spaces, the fields after it are separated by spaces
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return fields[1];
+        } catch (IOException | RuntimeException e) {
+            // the process ended in the meantime
+            return null;
+        }
+    }
+
+    private static long readResidentKilobytes(@NotNull Path processPath) {
+        try {
+            for (String line : Files.readAllLines(processPath.resolve("status"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmRSS:"))
+                    return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim());
+            }
+        } catch (IOException | RuntimeException e) {
+            // the process ended in the meantime
+        }
+        return 0;
+    }
+
+    @Nullable
+    private static String getOwnPid() {
+        try {
+            File self = PROC.resolve("self").toFile().getCanonicalFile();
+            return isNumeric(self.getName()) ? self.getName() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNumeric(@NotNull String value) {
+        if (value.isEmpty())
+            return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * Serves {@link BuildMetrics} over HTTP on the loopback interface, so that Prometheus can scrape them while the builds are running.
+ * {@code /metrics} returns the Prometheus text format, {@code /metrics.json} returns the JSON summary.
+ */
+public class MetricsHttpServer implements Closeable {
+    @NotNull
+    private final HttpServer server;
+
+    /**
+     * Starts the server.
+     *
+     * @param port    The port to listen on, {@code 0} to pick a free port (see {@link #getPort()})
+     * @param metrics Returns the metrics to serve or {@code null} if no metrics are available yet, e. g. {@link Executor#getMetrics()}
+     */
+    public MetricsHttpServer(int port, @NotNull Supplier<BuildMetrics> metrics) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            BuildMetrics currentMetrics = metrics.get();
+            if (exchange.getRequestURI().getPath().equals("/metrics.json"))
+                respond(exchange, currentMetrics == null ? null : currentMetrics.toJson(), "application/json");
+            else if (exchange.getRequestURI().getPath().equals("/metrics"))
+                respond(exchange, currentMetrics == null ? "" : currentMetrics.toPrometheusText(), "text/plain; version=0.0.4");
+            else
+                respond(exchange, null, "text/plain");
+        });
+        server.start();
+    }
+
+    /**
+     * @return The port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server immediately
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static void respond(@NotNull HttpExchange exchange, @Nullable String body, @NotNull String contentType) throws IOException {
+        try {
+            byte[] content = (body == null ? "Not found" : body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+            exchange.sendResponseHeaders(body == null ? 404 : 200, content.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(content);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Resolves the coordinates of poms and of their dependencies the way maven would, without building the full effective model:
+ * <ul>
+ * <li>{@code groupId} and {@code version} are inherited from the parent</li>
+ * <li>Properties ({@code ${...}}) are resolved from the {@code <properties>} of the pom and its parents and from the project coordinates
+ * ({@code project.version}, {@code project.parent.version}, ...)</li>
+ * <li>Dependencies without a version get the version from the {@code <dependencyManagement>} of the pom, of its parents
+ * and of imported boms</li>
+ * </ul>
+ * Only the poms passed to the constructor are known, parents and boms outside of them are not resolved.
+ * Lookups walk up the parents instead of copying their properties and managed dependencies into every child,
+ * so the memory needed stays proportional to the size of the poms, no matter how many modules share a parent.
+ * Parents and the dependency management declared by each pom are resolved at most once, and so is every property and managed version
+ * looked up in a pom. Only the looked up values are remembered. Instances are not thread safe.
+ */
+class ModelInterpolator {
+    // guards against properties which reference each other and against parents which inherit from each other
+    private static final int MAX_DEPTH = 32;
+
+    private final Map<String, Model> modelsByGa;
+    private final Map<Model, Optional<Model>> parents = new IdentityHashMap<>();
+    // the managed dependencies declared by each pom itself by groupId:artifactId, only computed for poms which are asked for them
+    private final Map<Model, Map<String, Dependency>> declaredManagedDependencies = new IdentityHashMap<>();
+    // the raw values of the properties looked up in each pom, empty if the property is not declared
+    private final Map<Model, Map<String, Optional<String>>> properties = new IdentityHashMap<>();
+    // the managed versions of the dependencies looked up in each pom by groupId:artifactId, empty if the dependency is not managed
+    private final Map<Model, Map<String, Optional<String>>> managedVersions = new IdentityHashMap<>();
+    // boms whose managed versions are being looked up, to detect boms which import each other
+    private final Set<Model> resolvingBoms = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * @param models The poms which may be parents or imported boms of each other
+     */
+    ModelInterpolator(@NotNull Collection<Model> models) {
+        modelsByGa = new HashMap<>(Math.max(16, models.size() * 2));
+        for (Model model : models) {
+            String groupId = getRawGroupId(model);
+            if (groupId != null && model.getArtifactId() != null)
+                modelsByGa.putIfAbsent(groupId + ':' + model.getArtifactId(), model);
+        }
+    }
+
+    /**
+     * @return The groupId of the pom, inherited from the parent if not specified
+     */
+    @Nullable
+    String getGroupId(@NotNull Model model) {
+        return interpolate(model, getRawGroupId(model));
+    }
+
+    /**
+     * @return The version of the pom, inherited from the parent if not specified
+     */
+    @Nullable
+    String getVersion(@NotNull Model model) {
+        return interpolate(model, getRawVersion(model));
+    }
+
+    @Nullable
+    String getGroupId(@NotNull Model model, @NotNull Dependency dependency) {
+        return interpolate(model, dependency.getGroupId());
+    }
+
+    /**
+     * @return The version of the dependency, taken from the dependency management if the dependency does not specify one,
+     * or {@code null} if the version is not known
+     */
+    @Nullable
+    String getVersion(@NotNull Model model, @NotNull Dependency dependency) {
+        if (dependency.getVersion() != null)
+            return interpolate(model, dependency.getVersion());
+        String groupId = getGroupId(model, dependency);
+        if (groupId == null || dependency.getArtifactId() == null)
+            return null;
+        Map<String, Optional<String>> versions = managedVersions.computeIfAbsent(model, key -> new HashMap<>());
+        String ga = groupId + ':' + dependency.getArtifactId();
+        Optional<String> res = versions.get(ga);
+        if (res == null) {
+            res = Optional.ofNullable(getManagedVersion(model, ga));
+            versions.put(ga, res);
+        }
+        return res.orElse(null);
+    }
+
+    /**
+     * @return The parent of the pom if it is one of the known poms
+     */
+    @Nullable
+    Model getParent(@NotNull Model model) {
+        return parents.computeIfAbsent(model, key -> {
+            Parent parent = key.getParent();
+            if (parent == null)
+                return Optional.empty();
+            Model res = modelsByGa.get(parent.getGroupId() + ':' + parent.getArtifactId());
+            // a pom cannot be its own parent, ignore broken poms instead of running in circles
+            return res == key ? Optional.empty() : Optional.ofNullable(res);
+        }).orElse(null);
+    }
+
+    /**
+     * Replaces all properties in the specified value in the context of the specified pom.
+     * Properties which cannot be resolved are left as they are.
+     */
+    @Nullable
+    String interpolate(@NotNull Model model, @Nullable String value) {
+        return interpolate(model, value, 0);
+    }
+
+    @Nullable
+    private String interpolate(@NotNull Model model, @Nullable String value, int depth) {
+        if (value == null || !value.contains("${") || depth > MAX_DEPTH)
+            return value;
+
+        StringBuilder res = new StringBuilder(value.length());
+        int position = 0;
+        while (position < value.length()) {
+            int start = value.indexOf("${", position);
+            int end = start < 0 ? -1 : value.indexOf('}', start + 2);
+            if (end < 0) {
+                res.append(value, position, value.length());
+                break;
+            }
+            res.append(value, position, start);
+            String expression = value.substring(start + 2, end);
+            String resolved = interpolate(model, resolveExpression(model, expression), depth + 1);
+            res.append(resolved == null ? "${" + expression + "}" : resolved);
+            position = end + 1;
+        }
+        return res.toString();
+    }
+
+    /**
+     * @return The raw value of the specified expression, which may contain further properties, or {@code null} if it is unknown
+     */
+    @Nullable
+    private String resolveExpression(@NotNull Model model, @NotNull String expression) {
+        // properties take precedence over the project coordinates, just like in maven
+        String property = getProperty(model, expression);
+        if (property != null)
+            return property;
+
+        String key = expression.startsWith("project.") ? expression.substring("project.".length())
+                : expression.startsWith("pom.") ? expression.substring("pom.".length()) : expression;
+        Parent parent = model.getParent();
+        switch (key) {
+            case "groupId":
+                return getRawGroupId(model);
+            case "artifactId":
+                return model.getArtifactId();
+            case "version":
+                return getRawVersion(model);
+            case "parent.groupId":
+                return parent == null ? null : parent.getGroupId();
+            case "parent.artifactId":
+                return parent == null ? null : parent.getArtifactId();
+            case "parent.version":
+                return parent == null ? null : parent.getVersion();
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static String getRawGroupId(@NotNull Model model) {
+        if (model.getGroupId() != null || model.getParent() == null)
+            return model.getGroupId();
+        return model.getParent().getGroupId();
+    }
+
+    @Nullable
+    private static String getRawVersion(@NotNull Model model) {
+        if (model.getVersion() != null || model.getParent() == null)
+            return model.getVersion();
+        return model.getParent().getVersion();
+    }
+
+    /**
+     * @return The raw value of the specified property of the pom or of its closest parent which declares it
+     */
+    @Nullable
+    private String getProperty(@NotNull Model model, @NotNull String name) {
+        Map<String, Optional<String>> values = properties.computeIfAbsent(model, key -> new HashMap<>());
+        Optional<String> res = values.get(name);
+        if (res == null) {
+            res = Optional.ofNullable(lookUpProperty(model, name));
+            values.put(name, res);
+        }
+        return res.orElse(null);
+    }
+
+    @Nullable
+    private String lookUpProperty(@NotNull Model model, @NotNull String name) {
+        Model current = model;
+        for (int depth = 0; current != null && depth <= MAX_DEPTH; depth++) {
+            String res = current.getProperties().getProperty(name);
+            if (res != null)
+                return res;
+            current = getParent(current);
+        }
+        return null;
+    }
+
+    /**
+     * Looks up the managed version of a dependency like maven: entries declared by the pom or its parents take precedence
+     * over the ones imported from boms. Inherited versions are interpolated in the context of the specified pom.
+     *
+     * @param ga The {@code groupId:artifactId} of the dependency
+     * @return The managed version or {@code null} if the dependency is not managed
+     */
+    @Nullable
+    private String getManagedVersion(@NotNull Model model, @NotNull String ga) {
+        Model current = model;
+        for (int depth = 0; current != null && depth <= MAX_DEPTH; depth++) {
+            Dependency managedDependency = getDeclaredManagedDependencies(current).get(ga);
+            if (managedDependency != null)
+                return interpolate(model, managedDependency.getVersion());
+            current = getParent(current);
+        }
+
+        current = model;
+        for (int depth = 0; current != null && depth <= MAX_DEPTH; depth++) {
+            if (current.getDependencyManagement() != null) {
+                for (Dependency dependency : current.getDependencyManagement().getDependencies()) {
+                    if (!isImport(dependency))
+                        continue;
+                    Model bom = modelsByGa.get(interpolate(model, dependency.getGroupId()) + ':' + dependency.getArtifactId());
+                    if (bom == null || !resolvingBoms.add(bom))
+                        continue;
+                    try {
+                        // the versions of a bom are interpolated in the context of the bom
+                        String res = getManagedVersion(bom, ga);
+                        if (res != null)
+                            return res;
+                    } finally {
+                        resolvingBoms.remove(bom);
+                    }
+                }
+            }
+            current = getParent(current);
+        }
+        return null;
+    }
+
+    /**
+     * @return The managed dependencies which the pom declares itself (not inherited, not imported) by {@code groupId:artifactId}
+     */
+    @NotNull
+    private Map<String, Dependency> getDeclaredManagedDependencies(@NotNull Model model) {
+        if (model.getDependencyManagement() == null)
+            return Collections.emptyMap();
+        return declaredManagedDependencies.computeIfAbsent(model, key -> {
+            Map<String, Dependency> res = new HashMap<>();
+            for (Dependency dependency : key.getDependencyManagement().getDependencies()) {
+                String groupId = interpolate(key, dependency.getGroupId());
+                if (!isImport(dependency) && groupId != null && dependency.getArtifactId() != null && dependency.getVersion() != null)
+                    res.putIfAbsent(groupId + ':' + dependency.getArtifactId(), dependency);
+            }
+            return res;
+        });
+    }
+
+    /**
+     * @return {@code true} if the specified managed dependency imports the dependency management of a bom
+     */
+    static boolean isImport(@NotNull Dependency dependency) {
+        return "import".equals(dependency.getScope()) && "pom".equals(dependency.getType());
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+
+/**
+ * A single module of a multi-module project, see {@link ProjectList#getModules()}.
+ * The module is built on its own from the root of its reactor, i. e. {@code mvn -pl <modulePath> <goals>}
+ * in {@link #getReactorProject()}, or {@code mvn -N <goals>} for the root pom itself.
+ */
+public class ModuleProject extends Project {
+    @NotNull
+    private final Project reactorProject;
+    @Nullable
+    private final String modulePath;
+
+    /**
+     * @param moduleFolder   The folder which contains the pom of the module
+     * @param reactorProject The project which contains the module
+     * @param modulePath     The path of the module folder relative to the folder of {@code reactorProject}
+     *                       or {@code null} if this is the root pom of the reactor
+     */
+    public ModuleProject(@NotNull File moduleFolder, @NotNull Project reactorProject, @Nullable String modulePath) {
+        super(moduleFolder);
+        this.reactorProject = reactorProject;
+        this.modulePath = modulePath;
+    }
+
+    /**
+     * @return The project which contains this module. Its folder is the base directory of the build.
+     */
+    @NotNull
+    public Project getReactorProject() {
+        return reactorProject;
+    }
+
+    /**
+     * @return The path of the module folder relative to the folder of {@link #getReactorProject()}
+     * or {@code null} if this is the root pom of the reactor
+     */
+    @Nullable
+    public String getModulePath() {
+        return modulePath;
+    }
+
+    /**
+     * @return {@code true} if this is the root pom of the reactor, which is built non-recursively
+     */
+    public boolean isReactorRoot() {
+        return modulePath == null;
+    }
+}
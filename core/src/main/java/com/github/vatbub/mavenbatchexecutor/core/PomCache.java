@@ -0,0 +1,203 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses poms and keeps the parsed models, keyed by the canonical path of the pom file.
+ * Every pom is parsed at most once, no matter how often it is requested.
+ * {@link #loadAll(Collection)} parses a set of projects and all of their (transitive) modules in parallel.
+ * If a {@link GraphCache} is set, poms which did not change since the cache was saved are not parsed at all.
+ * Only the parts of the poms which are relevant for the dependency graph are kept, see {@link GraphModels}.
+ */
+public class PomCache {
+    private final ConcurrentMap<String, Model> models = new ConcurrentHashMap<>();
+    private final StringInterner interner = new StringInterner();
+    private final int parallelism;
+    @Nullable
+    private GraphCache graphCache;
+
+    public PomCache() {
+        this(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param parallelism The number of threads used to parse poms in {@link #loadAll(Collection)}.
+     *                    Reading poms is mostly I/O bound, which is why it makes sense to use more threads than processors.
+     */
+    public PomCache(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param baseDir The folder which contains the pom
+     * @return The graph relevant parts of the pom of the specified folder or {@code null} if the folder does not contain a pom
+     */
+    @Nullable
+    public Model getModel(@NotNull File baseDir) throws IOException, XmlPullParserException {
+        File pomFile = baseDir.toPath().resolve("pom.xml").toFile();
+        if (!pomFile.exists()) {
+            if (graphCache != null)
+                graphCache.markMissing(pomFile);
+            return null;
+        }
+
+        String key = pomFile.getCanonicalPath();
+        Model model = models.get(key);
+        if (model != null) {
+            if (graphCache != null)
+                graphCache.markUsed(pomFile);
+            return model;
+        }
+
+        if (graphCache != null)
+            model = graphCache.getUnchangedModel(pomFile);
+        if (model == null)
+            model = readModel(pomFile);
+        Model previousModel = models.putIfAbsent(key, model);
+        return previousModel == null ? model : previousModel;
+    }
+
+    /**
+     * Parses the poms in all specified folders and the poms of their modules in parallel.
+     * Poms which have already been parsed are not parsed again.
+     *
+     * @param baseDirs The folders to parse
+     */
+    public void loadAll(@NotNull Collection<File> baseDirs) throws IOException, XmlPullParserException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<LoadTask> tasks = new ArrayList<>(baseDirs.size());
+            for (File baseDir : baseDirs)
+                tasks.add(new LoadTask(baseDir));
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (PomLoadingException e) {
+            // fork join may wrap the exception of another worker, so look for the original cause
+            Throwable cause = e.getCause();
+            while (cause instanceof PomLoadingException)
+                cause = cause.getCause();
+            if (cause instanceof XmlPullParserException)
+                throw (XmlPullParserException) cause;
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return The persistent cache which is consulted before a pom is parsed and which records every parsed pom,
+     * or {@code null} if poms are always parsed
+     */
+    @Nullable
+    public GraphCache getGraphCache() {
+        return graphCache;
+    }
+
+    public void setGraphCache(@Nullable GraphCache graphCache) {
+        this.graphCache = graphCache;
+    }
+
+    public int size() {
+        return models.size();
+    }
+
+    public void clear() {
+        models.clear();
+    }
+
+    @NotNull
+    private Model readModel(@NotNull File pomFile) throws IOException, XmlPullParserException {
+        byte[] content = Files.readAllBytes(pomFile.toPath());
+        Model fullModel = new MavenXpp3Reader().read(new ByteArrayInputStream(content));
+        fullModel.setPomFile(pomFile);
+        Model model = GraphModels.reduce(fullModel, interner);
+        if (graphCache != null)
+            graphCache.put(pomFile, content, model);
+        return model;
+    }
+
+    private class LoadTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        @NotNull
+        private final File baseDir;
+
+        LoadTask(@NotNull File baseDir) {
+            this.baseDir = baseDir;
+        }
+
+        @Override
+        protected void compute() {
+            Model model;
+            try {
+                model = getModel(baseDir);
+            } catch (IOException | XmlPullParserException e) {
+                throw new PomLoadingException(e);
+            }
+
+            if (model == null)
+                return;
+
+            List<LoadTask> moduleTasks = new ArrayList<>(model.getModules().size());
+            for (String module : model.getModules())
+                moduleTasks.add(new LoadTask(baseDir.toPath().resolve(module).toFile()));
+            invokeAll(moduleTasks);
+        }
+    }
+
+    private static class PomLoadingException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        PomLoadingException(Exception cause) {
+            super(cause);
+        }
+    }
+}
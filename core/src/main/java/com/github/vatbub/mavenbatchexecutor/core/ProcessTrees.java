@@ -0,0 +1,71 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Helpers to stop a process including all of its descendants.
+ */
+class ProcessTrees {
+    private ProcessTrees() {
+        throw new AssertionError("Cannot create instances of this class");
+    }
+
+    /**
+     * Forcibly stops the specified process and all of its descendants.
+     * Descendants can only be found when running on Java 9 or newer (using {@code ProcessHandle}).
+     * On Java 8, only the process itself is stopped.
+     */
+    static void destroyForcibly(@NotNull Process process) {
+        // collect the descendants first, they are reparented once the process is gone
+        List<?> descendants = getDescendants(process);
+        process.destroyForcibly();
+        if (descendants == null)
+            return;
+        try {
+            Method destroyForcibly = Class.forName("java.lang.ProcessHandle").getMethod("destroyForcibly");
+            for (Object descendant : descendants)
+                destroyForcibly.invoke(descendant);
+        } catch (ReflectiveOperationException e) {
+            // cannot happen as getDescendants succeeded
+        }
+    }
+
+    /**
+     * @return The handles of all descendants of the process or {@code null} if they cannot be determined on this java version
+     */
+    private static List<?> getDescendants(@NotNull Process process) {
+        try {
+            Object handle = Process.class.getMethod("toHandle").invoke(process);
+            Stream<?> descendants = (Stream<?>) Class.forName("java.lang.ProcessHandle").getMethod("descendants").invoke(handle);
+            return descendants.collect(Collectors.toList());
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
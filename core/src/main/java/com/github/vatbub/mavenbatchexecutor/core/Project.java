@@ -50,6 +50,13 @@ public class Project {
         setProjectFolder(new File(projectFolder));
     }
 
+    /**
+     * @return The name under which the project is reported, the path of the project folder by default
+     */
+    public String getDisplayName() {
+        return getProjectFolder().toString();
+    }
+
     public List<Project> getDependencies() {
         if (dependencies==null)
             dependencies = new ArrayList<>();
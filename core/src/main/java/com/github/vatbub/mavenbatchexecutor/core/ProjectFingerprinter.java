@@ -0,0 +1,136 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computes a content hash over everything that goes into the build of a project:
+ * the goals, all files of the project (including its poms) and the fingerprints of its upstream projects.
+ * Build output folders ({@code target}) and hidden files and folders (e. g. {@code .git}) are ignored.
+ * As the fingerprints of the upstream projects are part of the fingerprint, a change in a project changes the fingerprints of all of its dependents.
+ */
+public class ProjectFingerprinter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ProjectFingerprinter() {
+        throw new AssertionError("Cannot create instances of this class");
+    }
+
+    /**
+     * @param project              The project to fingerprint
+     * @param goals                The goals which will be executed
+     * @param upstreamFingerprints The fingerprints of the upstream projects in a stable order
+     * @return The fingerprint as a hex string
+     */
+    @NotNull
+    public static String fingerprint(@NotNull Project project, @NotNull List<String> goals, @NotNull List<String> upstreamFingerprints) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, "goals");
+        for (String goal : goals)
+            update(digest, goal);
+
+        update(digest, "files");
+        Path projectPath = project.getProjectFolder().toPath();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (Path file : listInputFiles(projectPath)) {
+            update(digest, projectPath.relativize(file).toString().replace('\\', '/'));
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1)
+                    digest.update(buffer, 0, read);
+            }
+            digest.update((byte) 0);
+        }
+
+        update(digest, "upstream");
+        for (String upstreamFingerprint : upstreamFingerprints)
+            update(digest, upstreamFingerprint);
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return All files of the project which are considered build inputs, sorted by path
+     */
+    @NotNull
+    static List<Path> listInputFiles(@NotNull Path projectPath) throws IOException {
+        List<Path> res = new ArrayList<>();
+        if (!Files.isDirectory(projectPath))
+            return res;
+
+        Files.walkFileTree(projectPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(projectPath))
+                    return FileVisitResult.CONTINUE;
+                String name = dir.getFileName().toString();
+                if (name.equals("target") || name.startsWith("."))
+                    return FileVisitResult.SKIP_SUBTREE;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !file.getFileName().toString().startsWith("."))
+                    res.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(res);
+        return res;
+    }
+
+    private static void update(@NotNull MessageDigest digest, @NotNull String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    @NotNull
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be present in every java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NotNull
+    static String toHex(@NotNull byte[] bytes) {
+        StringBuilder res = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            res.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return res.toString();
+    }
+}
@@ -24,19 +24,23 @@ package com.github.vatbub.mavenbatchexecutor.core;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.Parent;
-import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.time.Duration;
+import java.util.*;
 
 public class ProjectList extends ArrayList<Project> {
+    private static final long serialVersionUID = 1L;
+    private PomCache pomCache;
+    private File graphCacheFile;
+    private BuildEventListener eventListener;
+    private Duration pomParseDuration = Duration.ZERO;
+    private Duration graphResolutionDuration = Duration.ZERO;
+
     public ProjectList(int initialCapacity) {
         super(initialCapacity);
     }
@@ -50,132 +54,458 @@ public class ProjectList extends ArrayList<Project> {
 
     private void readPOMs(Project parent, File baseDir, List<MavenModelWrapper> pomList, List<MavenModelWrapper> submodulePomList, boolean readAsSubmodules) throws IOException, XmlPullParserException {
         List<MavenModelWrapper> pomListToUse = readAsSubmodules ? submodulePomList : pomList;
-        File pomFile = baseDir.toPath().resolve("pom.xml").toFile();
-        if (!pomFile.exists()) {
-            System.out.println("(" + baseDir + "): POM not found, skipping!");
+        Model model = getPomCache().getModel(baseDir);
+        if (model == null) {
+            warn("(" + baseDir + "): POM not found, skipping!");
             pomListToUse.add(null);
             return;
         }
 
-        FileReader reader = new FileReader(pomFile);
-        Model model = new MavenXpp3Reader().read(reader);
-        model.setPomFile(pomFile);
         MavenModelWrapper wrapper = new MavenModelWrapper(model);
         if (readAsSubmodules)
             wrapper.setParentProject(parent);
         pomListToUse.add(wrapper);
-        reader.close();
 
+        // the modules of a module node are nodes of their own
+        if (parent instanceof ModuleProject)
+            return;
         for (String module : model.getModules()) {
             readPOMs(parent, baseDir.toPath().resolve(module).toFile(), pomListToUse, submodulePomList, true);
         }
     }
 
+    /**
+     * @return The cache which holds the parsed poms of the projects in this list and their modules.
+     * The cache is shared with the lists returned by {@link #getSmartOrder()}.
+     */
+    @NotNull
+    public PomCache getPomCache() {
+        if (pomCache == null)
+            pomCache = new PomCache();
+        return pomCache;
+    }
+
+    public void setPomCache(@NotNull PomCache pomCache) {
+        this.pomCache = pomCache;
+    }
+
+    /**
+     * @return The listener which receives warnings (e. g. about missing poms) or {@code null} if warnings are not reported.
+     * Lists returned by {@link #getSmartOrder()} use the same listener.
+     */
+    @Nullable
+    public BuildEventListener getEventListener() {
+        return eventListener;
+    }
+
+    public void setEventListener(@Nullable BuildEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    private void warn(@NotNull String message) {
+        if (getEventListener() != null)
+            getEventListener().onEvent(BuildEvent.warning(null, message));
+    }
+
+    /**
+     * @return The file in which the dependency graph is persisted between runs (see {@link GraphCache})
+     * or {@code null} if the graph is resolved from scratch on every run
+     */
+    @Nullable
+    public File getGraphCacheFile() {
+        return graphCacheFile;
+    }
+
+    public void setGraphCacheFile(@Nullable File graphCacheFile) {
+        this.graphCacheFile = graphCacheFile;
+    }
+
+    /**
+     * Reads the poms of all projects, adds the dependencies between the projects to {@link Project#getDependencies()}
+     * and orders the projects in such a way that each project comes after all of its dependencies.
+     * Projects which do not depend on each other keep their relative order as far as possible.
+     * All poms are parsed in parallel and only once, see {@link #getPomCache()}.
+     * The dependency graph is built once and sorted in time linear to the number of projects and dependencies.
+     *
+     * @return A new list which contains the projects of this list in build order
+     * @throws DependencyCycleException If the dependencies of the projects form a cycle
+     */
     public ProjectList getSmartOrder() throws IOException, XmlPullParserException {
-        List<MavenModelWrapper> pomList = new ArrayList<>(this.size());
-        List<MavenModelWrapper> submodulePomList = new ArrayList<>(this.size());
+        long startNanos = System.nanoTime();
+        GraphCache graphCache = getGraphCacheFile() == null ? null : GraphCache.load(getGraphCacheFile(), getEventListener());
+        getPomCache().setGraphCache(graphCache);
 
-        for (Project project : this) {
-            readPOMs(project, project.getProjectFolder(), pomList, submodulePomList, false);
+        List<File> projectFolders = new ArrayList<>(this.size());
+        for (Project project : this)
+            projectFolders.add(project.getProjectFolder());
+        getPomCache().loadAll(projectFolders);
+        pomParseDuration = Duration.ofNanos(System.nanoTime() - startNanos);
+
+        List<int[]> dependencyIndices = graphCache == null ? null : graphCache.getDependencyIndices(this);
+        if (dependencyIndices == null) {
+            dependencyIndices = resolveDependencyIndices();
+            if (graphCache != null)
+                graphCache.setDependencyIndices(this, dependencyIndices);
+        }
+
+        if (graphCache != null) {
+            // the cache only speeds up the next run, so it must not fail this one
+            try {
+                graphCache.save();
+            } catch (IOException e) {
+                warn("(" + graphCache.getCacheFile() + "): Unable to save the graph cache: " + e.getMessage());
+            }
+            getPomCache().setGraphCache(null);
         }
 
         for (int i = 0; i < this.size(); i++) {
-            MavenModelWrapper model = pomList.get(i);
+            Project project = this.get(i);
+            for (int dependencyIndex : dependencyIndices.get(i)) {
+                Project dependencyProject = this.get(dependencyIndex);
+                if (!project.getDependencies().contains(dependencyProject))
+                    project.getDependencies().add(dependencyProject);
+            }
+        }
+
+        ProjectList res = getTopologicalOrder(dependencyIndices);
+        graphResolutionDuration = Duration.ofNanos(System.nanoTime() - startNanos);
+        return res;
+    }
+
+    /**
+     * Splits every multi-module project of this list into its modules. Every {@code <modules>} entry (transitively)
+     * becomes a {@link ModuleProject} of its own, so that {@link #getSmartOrder()} resolves the dependencies between
+     * modules instead of between whole repositories and independent modules of different repositories can be built at the same time.
+     * The root pom of each multi-module project becomes a module as well. Projects without modules are kept as they are.
+     * Note that modules are built without the other modules of their reactor, so they need to be installed to the local repository.
+     *
+     * @return A new list which contains the modules of the projects in this list, each module after the module that declares it
+     */
+    public ProjectList getModules() throws IOException, XmlPullParserException {
+        List<File> projectFolders = new ArrayList<>(this.size());
+        for (Project project : this)
+            projectFolders.add(project.getProjectFolder());
+        getPomCache().loadAll(projectFolders);
 
-            if (model == null)
+        ProjectList res = new ProjectList(this.size());
+        res.setPomCache(getPomCache());
+        res.setEventListener(getEventListener());
+        res.setGraphCacheFile(getGraphCacheFile());
+        for (Project project : this) {
+            Model model = getPomCache().getModel(project.getProjectFolder());
+            if (model == null || model.getModules().isEmpty()) {
+                res.add(project);
                 continue;
+            }
+            res.add(new ModuleProject(project.getProjectFolder(), project, null));
+            addModules(project, project.getProjectFolder(), model, res);
+        }
+        return res;
+    }
 
-            Project project = this.get(i);
-            int minIndex = -1;
-
-            // check for parent
-            Parent parent = model.getModel().getParent();
-            if (parent != null) {
-                int parentIndex = findIndexOfParent(pomList, parent);
-                minIndex = Math.max(parentIndex, minIndex);
-                if (parentIndex > -1)
-                    project.getDependencies().add(this.get(parentIndex));
+    private void addModules(@NotNull Project reactorProject, @NotNull File baseDir, @NotNull Model model, @NotNull List<Project> modules) throws IOException, XmlPullParserException {
+        for (String module : model.getModules()) {
+            File moduleFolder = baseDir.toPath().resolve(module).normalize().toFile();
+            Model moduleModel = getPomCache().getModel(moduleFolder);
+            if (moduleModel == null) {
+                warn("(" + moduleFolder + "): POM not found, skipping!");
+                continue;
             }
+            String modulePath = reactorProject.getProjectFolder().toPath().normalize().relativize(moduleFolder.toPath()).toString();
+            modules.add(new ModuleProject(moduleFolder, reactorProject, modulePath));
+            addModules(reactorProject, moduleFolder, moduleModel, modules);
+        }
+    }
 
-            // check dependencies and modules
-            minIndex = Math.max(getMinIndexOfModules(project, model.getModel(), pomList, submodulePomList, minIndex), minIndex);
+    /**
+     * Splits the build of every project of this list into stages which are built one after the other, e. g. {@code compile}, {@code test} and {@code install}.
+     * The first stage of a project waits for the artifact stage of its dependencies only, so the later stages of a project
+     * (e. g. long running tests) run while its dependents are already being built. A failure in a stage after the artifact stage
+     * therefore does not stop the dependents. The dependencies of the projects must have been resolved, see {@link #getSmartOrder()}.
+     *
+     * @param stageGoals    The goals of each stage
+     * @param artifactStage The index of the stage after which the artifacts of a project are available to its dependents, e. g. the stage which installs them
+     * @return A new list which contains a {@link StageProject} for each stage of each project of this list, in build order if this list is in build order
+     */
+    public ProjectList getStages(@NotNull List<List<String>> stageGoals, int artifactStage) {
+        if (stageGoals.isEmpty())
+            throw new IllegalArgumentException("At least one stage is required");
+        if (artifactStage < 0 || artifactStage >= stageGoals.size())
+            throw new IllegalArgumentException("artifactStage must be the index of a stage");
 
-            if (minIndex > i) {
-                ProjectList thisCopy = new ProjectList(this);
-                Collections.swap(thisCopy, i, minIndex);
-                return thisCopy.getSmartOrder();
+        Map<Project, StageProject> artifactStages = new HashMap<>(this.size() * 2);
+        ProjectList res = new ProjectList(this.size() * stageGoals.size());
+        res.setPomCache(getPomCache());
+        res.setEventListener(getEventListener());
+        for (Project project : this) {
+            StageProject previousStage = null;
+            for (int i = 0; i < stageGoals.size(); i++) {
+                StageProject stage = new StageProject(project, i, stageGoals.get(i), i == stageGoals.size() - 1);
+                if (previousStage != null) {
+                    stage.getDependencies().add(previousStage);
+                } else {
+                    for (Project dependency : project.getDependencies()) {
+                        // dependencies which are not part of this list still need a stage node to look up their last successful build
+                        stage.getDependencies().add(artifactStages.computeIfAbsent(dependency,
+                                key -> new StageProject(key, artifactStage, stageGoals.get(artifactStage), artifactStage == stageGoals.size() - 1)));
+                    }
+                }
+                if (i == artifactStage)
+                    artifactStages.put(project, stage);
+                res.add(stage);
+                previousStage = stage;
             }
         }
+        return res;
+    }
 
-        return this;
+    /**
+     * @return The time the last call to {@link #getSmartOrder()} spent reading and parsing the poms
+     */
+    @NotNull
+    public Duration getPomParseDuration() {
+        return pomParseDuration;
     }
 
-    private int getMinIndexOfModules(Project project, File basedir, List<MavenModelWrapper> smartListPoms, List<MavenModelWrapper> submodulePoms, int minIndex) throws IOException, XmlPullParserException {
-        File pomFile = basedir.toPath().resolve("pom.xml").toFile();
-        FileReader reader = new FileReader(pomFile);
-        Model model = new MavenXpp3Reader().read(reader);
-        model.setPomFile(pomFile);
-        reader.close();
-        return getMinIndexOfModules(project, model, smartListPoms, submodulePoms, minIndex);
+    /**
+     * @return The total time of the last call to {@link #getSmartOrder()}, including {@link #getPomParseDuration()}
+     */
+    @NotNull
+    public Duration getGraphResolutionDuration() {
+        return graphResolutionDuration;
     }
 
-    private int getMinIndexOfModules(Project project, Model model, List<MavenModelWrapper> smartListPoms, List<MavenModelWrapper> submodulePoms, int minIndex) throws IOException, XmlPullParserException {
-        for (Dependency dependency : model.getDependencies()) {
-            int dependencyIndex = findIndexOfDependency(smartListPoms, submodulePoms, dependency);
-            minIndex = Math.max(dependencyIndex, minIndex);
-            if (dependencyIndex > -1) {
-                Project dependencyProject = this.get(dependencyIndex);
-                if (!dependencyProject.equals(project))
-                    project.getDependencies().add(dependencyProject);
+    /**
+     * Determines which projects need to be rebuilt if the specified projects changed:
+     * the changed projects themselves and all projects which (transitively) depend on them.
+     *
+     * @param changedProjects The projects which changed
+     * @return A new list which contains the affected projects of this list in build order
+     * @throws DependencyCycleException If the dependencies of the projects form a cycle
+     * @see #getSmartOrder()
+     */
+    public ProjectList getAffectedProjects(@NotNull Collection<Project> changedProjects) throws IOException, XmlPullParserException {
+        ProjectList buildOrder = getSmartOrder();
+
+        Map<Project, List<Project>> dependents = new HashMap<>(buildOrder.size());
+        for (Project project : buildOrder) {
+            for (Project dependency : project.getDependencies())
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(project);
+        }
+
+        Set<Project> affectedProjects = new HashSet<>();
+        Deque<Project> queue = new ArrayDeque<>();
+        for (Project project : changedProjects) {
+            if (affectedProjects.add(project))
+                queue.add(project);
+        }
+        while (!queue.isEmpty()) {
+            for (Project dependent : dependents.getOrDefault(queue.poll(), Collections.emptyList())) {
+                if (affectedProjects.add(dependent))
+                    queue.add(dependent);
             }
         }
 
-        for (String module : model.getModules()) {
-            minIndex = Math.max(getMinIndexOfModules(project, model.getPomFile().getParentFile().toPath().resolve(module).toFile(), smartListPoms, submodulePoms, minIndex), minIndex);
+        ProjectList res = new ProjectList(affectedProjects.size());
+        res.setPomCache(getPomCache());
+        res.setEventListener(getEventListener());
+        for (Project project : buildOrder) {
+            if (affectedProjects.contains(project))
+                res.add(project);
+        }
+        return res;
+    }
+
+    /**
+     * Builds the dependency graph from the parsed poms.
+     * The graph is built on indices into this list: the poms of each project are kept in one contiguous range
+     * and the dependencies of each project are collected into a primitive array.
+     *
+     * @return The indices of the dependencies of each project in this list
+     */
+    private List<int[]> resolveDependencyIndices() throws IOException, XmlPullParserException {
+        // the poms of project i are models[firstModelIndices[i]] to models[firstModelIndices[i + 1] - 1]
+        List<Model> models = new ArrayList<>(this.size());
+        int[] firstModelIndices = new int[this.size() + 1];
+        for (int i = 0; i < this.size(); i++) {
+            firstModelIndices[i] = models.size();
+            List<MavenModelWrapper> poms = new ArrayList<>();
+            readPOMs(this.get(i), this.get(i).getProjectFolder(), poms, poms, false);
+            for (MavenModelWrapper pom : poms) {
+                if (pom != null)
+                    models.add(pom.getModel());
+            }
         }
+        firstModelIndices[this.size()] = models.size();
 
-        return minIndex;
+        Map<Project, Integer> projectIndices = new HashMap<>(this.size() * 2);
+        for (int i = 0; i < this.size(); i++)
+            projectIndices.putIfAbsent(this.get(i), i);
+
+        ModelInterpolator interpolator = new ModelInterpolator(models);
+        GavIndex gavIndex = new GavIndex(models.size());
+        for (int i = 0; i < this.size(); i++) {
+            for (int j = firstModelIndices[i]; j < firstModelIndices[i + 1]; j++) {
+                Model model = models.get(j);
+                gavIndex.add(interpolator.getGroupId(model), model.getArtifactId(), interpolator.getVersion(model), this.get(i));
+            }
+        }
+
+        DependencyCollector collector = new DependencyCollector(this.size(), projectIndices);
+        List<int[]> res = new ArrayList<>(this.size());
+        for (int i = 0; i < this.size(); i++) {
+            collector.start(i);
+            for (int j = firstModelIndices[i]; j < firstModelIndices[i + 1]; j++)
+                addDependencies(models.get(j), interpolator, gavIndex, collector);
+            res.add(collector.toArray());
+        }
+        return res;
     }
 
-    @SuppressWarnings("Duplicates")
-    private int findIndexOfDependency(List<MavenModelWrapper> list, List<MavenModelWrapper> submodulePoms, Dependency dependencyToFind) {
-        for (int i = 0; i < list.size(); i++) {
-            MavenModelWrapper modelWrapper = list.get(i);
-            if (modelWrapper == null)
-                continue;
-            Model model = modelWrapper.getModel();
-            if (dependencyToFind.getGroupId().equals(model.getGroupId()) && dependencyToFind.getArtifactId().equals(model.getArtifactId()) && dependencyToFind.getVersion().equals(model.getVersion()))
-                return i;
+    private void addDependencies(Model model, ModelInterpolator interpolator, GavIndex gavIndex, DependencyCollector collector) {
+        Parent parent = model.getParent();
+        if (parent != null)
+            collector.add(gavIndex.find(parent.getGroupId(), parent.getArtifactId(), interpolator.interpolate(model, parent.getVersion())));
+
+        for (Dependency dependency : model.getDependencies())
+            collector.add(gavIndex.find(interpolator.getGroupId(model, dependency), dependency.getArtifactId(), interpolator.getVersion(model, dependency)));
+
+        // imported boms have to be installed before the poms which import them can be built
+        if (model.getDependencyManagement() != null) {
+            for (Dependency dependency : model.getDependencyManagement().getDependencies()) {
+                if (ModelInterpolator.isImport(dependency))
+                    collector.add(gavIndex.find(interpolator.getGroupId(model, dependency), dependency.getArtifactId(), interpolator.getVersion(model, dependency)));
+            }
         }
+    }
 
-        // submodules
-        for (int i = 0; i < submodulePoms.size(); i++) {
-            MavenModelWrapper modelWrapper = submodulePoms.get(i);
-            if (modelWrapper == null)
-                continue;
-            Model model = modelWrapper.getModel();
-            if (model.getGroupId() == null)
-                model.setGroupId(model.getParent().getGroupId());
-            if (model.getVersion() == null)
-                model.setVersion(model.getParent().getVersion());
-            if (dependencyToFind.getGroupId().equals(model.getGroupId()) && dependencyToFind.getArtifactId().equals(model.getArtifactId()) && dependencyToFind.getVersion().equals(model.getVersion()))
-                return this.indexOf(modelWrapper.getParentProject());
+    /**
+     * Sorts this list using Kahn's algorithm.
+     *
+     * @param dependencyIndices The indices of the dependencies of each project in this list
+     * @return The projects of this list in topological order
+     * @throws DependencyCycleException If the dependencies form a cycle
+     */
+    private ProjectList getTopologicalOrder(List<int[]> dependencyIndices) {
+        // the dependents of project i are dependents[firstDependentIndices[i]] to dependents[firstDependentIndices[i + 1] - 1]
+        int[] inDegrees = new int[this.size()];
+        int[] firstDependentIndices = new int[this.size() + 1];
+        for (int i = 0; i < this.size(); i++) {
+            inDegrees[i] = dependencyIndices.get(i).length;
+            for (int dependencyIndex : dependencyIndices.get(i))
+                firstDependentIndices[dependencyIndex + 1]++;
+        }
+        for (int i = 0; i < this.size(); i++)
+            firstDependentIndices[i + 1] += firstDependentIndices[i];
+        int[] dependents = new int[firstDependentIndices[this.size()]];
+        int[] nextDependentIndices = Arrays.copyOf(firstDependentIndices, this.size());
+        for (int i = 0; i < this.size(); i++) {
+            for (int dependencyIndex : dependencyIndices.get(i))
+                dependents[nextDependentIndices[dependencyIndex]++] = i;
         }
 
-        return -1; // not found
+        // every project is queued exactly once, so a plain array serves as the queue
+        int[] readyIndices = new int[this.size()];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < this.size(); i++) {
+            if (inDegrees[i] == 0)
+                readyIndices[tail++] = i;
+        }
+
+        ProjectList res = new ProjectList(this.size());
+        res.setPomCache(getPomCache());
+        res.setEventListener(getEventListener());
+        while (head < tail) {
+            int index = readyIndices[head++];
+            res.add(this.get(index));
+            for (int i = firstDependentIndices[index]; i < firstDependentIndices[index + 1]; i++) {
+                int dependentIndex = dependents[i];
+                inDegrees[dependentIndex]--;
+                if (inDegrees[dependentIndex] == 0)
+                    readyIndices[tail++] = dependentIndex;
+            }
+        }
+
+        if (res.size() < this.size())
+            throw createCycleException(dependencyIndices, inDegrees);
+
+        return res;
     }
 
-    @SuppressWarnings("Duplicates")
-    private int findIndexOfParent(List<MavenModelWrapper> list, Parent modelToFind) {
-        for (int i = 0; i < list.size(); i++) {
-            MavenModelWrapper modelWrapper = list.get(i);
-            if (modelWrapper == null)
-                continue;
-            Model model = modelWrapper.getModel();
-            if (modelToFind.getGroupId().equals(model.getGroupId()) && modelToFind.getArtifactId().equals(model.getArtifactId()) && modelToFind.getVersion().equals(model.getVersion()))
-                return i;
+    private DependencyCycleException createCycleException(List<int[]> dependencyIndices, int[] inDegrees) {
+        List<Project> unorderedProjects = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < inDegrees.length; i++) {
+            if (inDegrees[i] > 0) {
+                unorderedProjects.add(this.get(i));
+                if (start == -1)
+                    start = i;
+            }
+        }
+
+        // Every unordered project has at least one unordered dependency, so following those will eventually revisit a project
+        List<Integer> path = new ArrayList<>();
+        Map<Integer, Integer> positionInPath = new HashMap<>();
+        int current = start;
+        while (!positionInPath.containsKey(current)) {
+            positionInPath.put(current, path.size());
+            path.add(current);
+            for (int dependencyIndex : dependencyIndices.get(current)) {
+                if (inDegrees[dependencyIndex] > 0) {
+                    current = dependencyIndex;
+                    break;
+                }
+            }
         }
 
-        return -1; // not found
+        List<Project> cycle = new ArrayList<>();
+        for (int index : path.subList(positionInPath.get(current), path.size()))
+            cycle.add(this.get(index));
+
+        return new DependencyCycleException(cycle, unorderedProjects);
+    }
+
+    /**
+     * Collects the dependency indices of one project after the other into a reusable buffer, skipping duplicates and self references.
+     */
+    private static class DependencyCollector {
+        @NotNull
+        private final Map<Project, Integer> projectIndices;
+        // the project which added each index last, to skip duplicates without a set
+        @NotNull
+        private final int[] lastAddedBy;
+        @NotNull
+        private int[] buffer = new int[16];
+        private int size;
+        private int projectIndex;
+
+        DependencyCollector(int projectCount, @NotNull Map<Project, Integer> projectIndices) {
+            this.projectIndices = projectIndices;
+            this.lastAddedBy = new int[projectCount];
+            Arrays.fill(lastAddedBy, -1);
+        }
+
+        void start(int projectIndex) {
+            this.projectIndex = projectIndex;
+            size = 0;
+        }
+
+        void add(@Nullable Project dependencyProject) {
+            if (dependencyProject == null)
+                return;
+            int dependencyIndex = projectIndices.get(dependencyProject);
+            if (dependencyIndex == projectIndex || lastAddedBy[dependencyIndex] == projectIndex)
+                return;
+            lastAddedBy[dependencyIndex] = projectIndex;
+            if (size == buffer.length)
+                buffer = Arrays.copyOf(buffer, size * 2);
+            buffer[size++] = dependencyIndex;
+        }
+
+        @NotNull
+        int[] toArray() {
+            return Arrays.copyOf(buffer, size);
+        }
     }
 }
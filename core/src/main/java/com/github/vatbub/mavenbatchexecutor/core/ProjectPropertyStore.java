@@ -0,0 +1,120 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * Base class for small stores which remember one value per project across runs.
+ * The values are kept in a properties file which maps the canonical path of the project folder to the value.
+ * All methods are thread safe.
+ */
+public abstract class ProjectPropertyStore {
+    @NotNull
+    private final File storeFile;
+    @NotNull
+    private final Properties properties;
+
+    protected ProjectPropertyStore(@NotNull File storeFile) throws IOException {
+        this.storeFile = storeFile;
+        this.properties = new Properties();
+        if (storeFile.exists()) {
+            try (InputStream inputStream = new FileInputStream(storeFile)) {
+                properties.load(inputStream);
+            }
+        }
+    }
+
+    /**
+     * @param fileName The name of the store file
+     * @return A file with the specified name in the folder in the user home directory which holds all default stores
+     */
+    @NotNull
+    protected static File getDefaultStoreFile(@NotNull String fileName) {
+        return new File(System.getProperty("user.home")).toPath().resolve(".mavenbatchexecutor").resolve(fileName).toFile();
+    }
+
+    @NotNull
+    public File getStoreFile() {
+        return storeFile;
+    }
+
+    @Nullable
+    protected synchronized String getValue(@NotNull Project project) {
+        return properties.getProperty(getKey(project));
+    }
+
+    protected synchronized void setValue(@NotNull Project project, @Nullable String value) {
+        if (value == null)
+            properties.remove(getKey(project));
+        else
+            properties.setProperty(getKey(project), value);
+    }
+
+    /**
+     * @return A snapshot of all values in this store
+     */
+    @NotNull
+    protected synchronized Properties getValues() {
+        Properties res = new Properties();
+        res.putAll(properties);
+        return res;
+    }
+
+    public synchronized void save() throws IOException {
+        File parentFolder = storeFile.getAbsoluteFile().getParentFile();
+        if (parentFolder != null)
+            Files.createDirectories(parentFolder.toPath());
+        try (OutputStream outputStream = new FileOutputStream(storeFile)) {
+            properties.store(outputStream, getComment());
+        }
+    }
+
+    /**
+     * @return The comment which is written to the top of the store file
+     */
+    @NotNull
+    protected abstract String getComment();
+
+    @NotNull
+    private static String getKey(@NotNull Project project) {
+        // the stages of a pipeline share the project folder, but each one has properties of its own
+        if (project instanceof StageProject)
+            return getKey(((StageProject) project).getProject()) + "#" + ((StageProject) project).getStageName();
+        // the root pom of a reactor shares the folder with the whole project, but is built non-recursively
+        String suffix = "";
+        if (project instanceof ModuleProject) {
+            ModuleProject module = (ModuleProject) project;
+            suffix = module.isReactorRoot() ? "#root" : "#module:" + module.getModulePath();
+        }
+        try {
+            return project.getProjectFolder().getCanonicalPath() + suffix;
+        } catch (IOException e) {
+            return project.getProjectFolder().getAbsolutePath() + suffix;
+        }
+    }
+}
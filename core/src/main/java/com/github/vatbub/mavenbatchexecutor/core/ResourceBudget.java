@@ -0,0 +1,68 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * The memory and cpus which all builds that run at the same time may use together.
+ * A ready build is only started if its {@link ResourceWeight} fits into what is left of the budget, otherwise it waits until running builds release enough resources.
+ * A build whose weight exceeds the whole budget is started once no other build is running, so every build runs eventually.
+ */
+public class ResourceBudget {
+    private final long memoryInMegabytes;
+    private final int cpus;
+
+    /**
+     * @param memoryInMegabytes The memory all builds may use together in megabytes
+     * @param cpus              The number of cpus all builds may use together
+     */
+    public ResourceBudget(long memoryInMegabytes, int cpus) {
+        if (memoryInMegabytes < 1)
+            throw new IllegalArgumentException("memoryInMegabytes must be at least 1");
+        if (cpus < 1)
+            throw new IllegalArgumentException("cpus must be at least 1");
+        this.memoryInMegabytes = memoryInMegabytes;
+        this.cpus = cpus;
+    }
+
+    public long getMemoryInMegabytes() {
+        return memoryInMegabytes;
+    }
+
+    public int getCpus() {
+        return cpus;
+    }
+
+    /**
+     * @param usedMemoryInMegabytes The memory which is used by the running builds
+     * @param usedCpus              The cpus which are used by the running builds
+     * @param weight                The weight of the build to start
+     * @return {@code true} if the build fits into the remaining budget
+     */
+    boolean fits(long usedMemoryInMegabytes, int usedCpus, ResourceWeight weight) {
+        return usedMemoryInMegabytes + weight.getMemoryInMegabytes() <= memoryInMegabytes && usedCpus + weight.getCpus() <= cpus;
+    }
+
+    @Override
+    public String toString() {
+        return memoryInMegabytes + " MB, " + cpus + " cpu(s)";
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * The resources a single build is expected to use. Used for admission control, see {@link ResourceBudget}.
+ */
+public class ResourceWeight {
+    private final long memoryInMegabytes;
+    private final int cpus;
+
+    /**
+     * @param memoryInMegabytes The memory the build uses in megabytes
+     * @param cpus              The number of cpus the build uses
+     */
+    public ResourceWeight(long memoryInMegabytes, int cpus) {
+        if (memoryInMegabytes < 0)
+            throw new IllegalArgumentException("memoryInMegabytes must not be negative");
+        if (cpus < 1)
+            throw new IllegalArgumentException("cpus must be at least 1");
+        this.memoryInMegabytes = memoryInMegabytes;
+        this.cpus = cpus;
+    }
+
+    public long getMemoryInMegabytes() {
+        return memoryInMegabytes;
+    }
+
+    public int getCpus() {
+        return cpus;
+    }
+
+    @Override
+    public String toString() {
+        return memoryInMegabytes + " MB, " + cpus + " cpu(s)";
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Remembers the peak memory usage (resident set size) of the last successful build of each project in megabytes.
+ * Used to learn the {@link ResourceWeight} of projects which do not have a configured weight.
+ */
+public class ResourceWeightStore extends ProjectPropertyStore {
+    public ResourceWeightStore(@NotNull File storeFile) throws IOException {
+        super(storeFile);
+    }
+
+    /**
+     * @return The default store which is located in the user home directory
+     */
+    @NotNull
+    public static File getDefaultStoreFile() {
+        return getDefaultStoreFile("peakMemory.properties");
+    }
+
+    /**
+     * @return The peak memory usage of the last recorded build of the specified project in megabytes or {@code -1} if none was recorded
+     */
+    public long getPeakMemory(@NotNull Project project) {
+        String value = getValue(project);
+        if (value == null)
+            return -1;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public void setPeakMemory(@NotNull Project project, long peakMemoryInMegabytes) {
+        setValue(project, Long.toString(peakMemoryInMegabytes));
+    }
+
+    @NotNull
+    @Override
+    protected String getComment() {
+        return "Peak memory usage of the builds recorded by the maven batch executor (in megabytes)";
+    }
+}
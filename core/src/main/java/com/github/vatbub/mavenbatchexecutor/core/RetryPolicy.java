@@ -0,0 +1,120 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Specifies how often and when failed builds are retried.
+ * A failed project is queued again after a backoff which grows exponentially with every retry.
+ * Its dependents wait until the retry finished, so only the failed project and the projects which were not built yet are affected.
+ * Projects which were already built successfully are never built again.
+ */
+public class RetryPolicy {
+    private final int maxRetries;
+    @NotNull
+    private final Duration initialBackoff;
+    private final double backoffMultiplier;
+    @NotNull
+    private final Duration maxBackoff;
+    @Nullable
+    private final List<String> retryGoals;
+
+    /**
+     * Creates a policy which retries with the same goals and doubles the backoff after every retry (up to 10 minutes).
+     *
+     * @param maxRetries     The maximum number of times a failed build is retried
+     * @param initialBackoff The time to wait before the first retry
+     */
+    public RetryPolicy(int maxRetries, @NotNull Duration initialBackoff) {
+        this(maxRetries, initialBackoff, 2, Duration.ofMinutes(10), null);
+    }
+
+    /**
+     * @param maxRetries        The maximum number of times a failed build is retried
+     * @param initialBackoff    The time to wait before the first retry
+     * @param backoffMultiplier The factor by which the backoff grows with every retry
+     * @param maxBackoff        The maximum time to wait before a retry
+     * @param retryGoals        The goals to use for the retries, e. g. {@code -o} and {@code -DskipTests} in addition to the regular goals,
+     *                          or {@code null} to retry with the regular goals ({@link Executor#getMavenGoals()})
+     */
+    public RetryPolicy(int maxRetries, @NotNull Duration initialBackoff, double backoffMultiplier, @NotNull Duration maxBackoff, @Nullable List<String> retryGoals) {
+        if (maxRetries < 0)
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        if (initialBackoff.isNegative())
+            throw new IllegalArgumentException("initialBackoff must not be negative");
+        if (backoffMultiplier < 1)
+            throw new IllegalArgumentException("backoffMultiplier must be at least 1");
+        this.maxRetries = maxRetries;
+        this.initialBackoff = initialBackoff;
+        this.backoffMultiplier = backoffMultiplier;
+        this.maxBackoff = maxBackoff;
+        this.retryGoals = retryGoals == null ? null : Collections.unmodifiableList(new ArrayList<>(retryGoals));
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    @NotNull
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    @NotNull
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    @Nullable
+    public List<String> getRetryGoals() {
+        return retryGoals;
+    }
+
+    /**
+     * @param retry The number of the retry, starting at 1
+     * @return The time to wait before the specified retry
+     */
+    @NotNull
+    public Duration getBackoff(int retry) {
+        double backoffMillis = initialBackoff.toMillis() * Math.pow(backoffMultiplier, retry - 1);
+        if (backoffMillis >= maxBackoff.toMillis())
+            return maxBackoff;
+        return Duration.ofMillis((long) backoffMillis);
+    }
+
+    @Override
+    public String toString() {
+        return maxRetries + " retries, backoff " + initialBackoff + " * " + backoffMultiplier + "^n (max " + maxBackoff + ")"
+                + (retryGoals == null ? "" : ", goals " + retryGoals);
+    }
+}
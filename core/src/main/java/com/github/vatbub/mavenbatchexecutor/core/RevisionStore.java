@@ -0,0 +1,64 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Remembers the git revision (the commit id of {@code HEAD}) at which each project was last built successfully.
+ * Used by {@link GitChangeDetector} to find the projects which changed since their last successful build.
+ */
+public class RevisionStore extends ProjectPropertyStore {
+    public RevisionStore(@NotNull File storeFile) throws IOException {
+        super(storeFile);
+    }
+
+    /**
+     * @return The default store which is located in the user home directory
+     */
+    @NotNull
+    public static File getDefaultStoreFile() {
+        return getDefaultStoreFile("revisions.properties");
+    }
+
+    /**
+     * @return The revision of the last successful build of the specified project or {@code null} if none was recorded
+     */
+    @Nullable
+    public String getRevision(@NotNull Project project) {
+        return getValue(project);
+    }
+
+    public void setRevision(@NotNull Project project, @Nullable String revision) {
+        setValue(project, revision);
+    }
+
+    @NotNull
+    @Override
+    protected String getComment() {
+        return "Git revisions of the last successful builds recorded by the maven batch executor";
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One stage of the build of a project in a pipelined batch, see {@link ProjectList#getStages(List, int)}.
+ * Every stage runs its own goals as a separate build of {@link #getProject()}.
+ */
+public class StageProject extends Project {
+    @NotNull
+    private final Project project;
+    private final int stageIndex;
+    @NotNull
+    private final List<String> goals;
+    private final boolean lastStage;
+
+    /**
+     * @param project    The project to build
+     * @param stageIndex The index of this stage in the pipeline
+     * @param goals      The goals of this stage
+     * @param lastStage  {@code true} if this is the last stage of the pipeline
+     */
+    public StageProject(@NotNull Project project, int stageIndex, @NotNull List<String> goals, boolean lastStage) {
+        super(project.getProjectFolder());
+        this.project = project;
+        this.stageIndex = stageIndex;
+        this.goals = Collections.unmodifiableList(new ArrayList<>(goals));
+        this.lastStage = lastStage;
+    }
+
+    /**
+     * @return The project which is built in this stage
+     */
+    @NotNull
+    public Project getProject() {
+        return project;
+    }
+
+    public int getStageIndex() {
+        return stageIndex;
+    }
+
+    @NotNull
+    public List<String> getGoals() {
+        return goals;
+    }
+
+    /**
+     * @return The goals of this stage separated by spaces, e. g. {@code test}
+     */
+    @NotNull
+    public String getStageName() {
+        return String.join(" ", getGoals());
+    }
+
+    /**
+     * @return {@code true} if the project is completely built once this stage finished
+     */
+    public boolean isLastStage() {
+        return lastStage;
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return super.getDisplayName() + " [" + getStageName() + "]";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return super.equals(o) && stageIndex == ((StageProject) o).stageIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + stageIndex;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " [" + getStageName() + "]";
+    }
+}
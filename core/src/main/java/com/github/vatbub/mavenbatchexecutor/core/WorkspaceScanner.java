@@ -0,0 +1,307 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the maven projects below a folder. Every folder below the root which contains a {@code pom.xml} is a project,
+ * a pom in the root folder itself is ignored. The scan does not descend into projects, as their subfolders are either modules of the project or its sources.
+ * By default, only the direct subfolders of the root are searched, see {@link #getMaxDepth()}.
+ * Folders are listed in parallel, as the scan is mostly I/O bound.
+ * <p>
+ * The following folders are skipped including everything below them:
+ * <ul>
+ * <li>Hidden folders (whose name starts with a dot, e. g. {@code .git}) and symbolic links</li>
+ * <li>Folders which match one of the {@link #getExcludes() exclude globs}</li>
+ * <li>Folders which match a pattern in a {@value #IGNORE_FILE_NAME} file. Each line of the file is a glob which is matched against
+ * the path relative to the folder that contains the file. Patterns without a slash match folders with that name at any depth.
+ * Empty lines and lines starting with {@code #} are ignored.</li>
+ * </ul>
+ * If {@link #getIncludes() include globs} are specified, only projects whose path relative to the root matches one of them are returned.
+ */
+public class WorkspaceScanner {
+    public static final String IGNORE_FILE_NAME = ".batchignore";
+
+    @NotNull
+    private final Path root;
+    @NotNull
+    private List<String> includes = Collections.emptyList();
+    @NotNull
+    private List<String> excludes = Collections.emptyList();
+    private int maxDepth = 1;
+    private int parallelism = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    @Nullable
+    private BuildEventListener eventListener;
+
+    /**
+     * @param root The folder to scan
+     */
+    public WorkspaceScanner(@NotNull File root) {
+        this.root = root.toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * @return Globs which are matched against the path of a project relative to the root, e. g. {@code libs/**}.
+     * If not empty, only matching projects are returned.
+     */
+    @NotNull
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public void setIncludes(@NotNull List<String> includes) {
+        this.includes = includes;
+    }
+
+    /**
+     * @return Globs which are matched against the path of each folder relative to the root, e. g. {@code archive/*}.
+     * Matching folders are skipped including everything below them. Globs without a slash match folder names at any depth.
+     */
+    @NotNull
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public void setExcludes(@NotNull List<String> excludes) {
+        this.excludes = excludes;
+    }
+
+    /**
+     * @return How many levels below the root are searched for projects, {@code 1} (default) only looks at the direct subfolders.
+     * Folders without a pom at deeper levels are searched for projects up to this depth.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1)
+            throw new IllegalArgumentException("maxDepth must be at least 1");
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @return The number of folders which are listed at the same time
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return The listener which receives warnings about folders which cannot be read or {@code null} if warnings are not reported.
+     * The returned project lists use the same listener.
+     */
+    @Nullable
+    public BuildEventListener getEventListener() {
+        return eventListener;
+    }
+
+    public void setEventListener(@Nullable BuildEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * Scans the root folder.
+     *
+     * @return The projects which were found, sorted by path
+     * @throws IOException If the root folder cannot be read
+     */
+    @NotNull
+    public ProjectList scan() throws IOException {
+        if (!Files.isDirectory(root))
+            throw new NotDirectoryException(root.toString());
+
+        List<IgnoreRule> rules = new ArrayList<>(excludes.size());
+        for (String exclude : excludes)
+            rules.add(new IgnoreRule(root, exclude));
+        List<PathMatcher> includeMatchers = new ArrayList<>(includes.size());
+        for (String include : includes)
+            includeMatchers.add(root.getFileSystem().getPathMatcher("glob:" + include));
+
+        List<Path> projectFolders;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            projectFolders = pool.invoke(new ScanTask(root, 0, rules));
+        } finally {
+            pool.shutdown();
+        }
+
+        ProjectList res = new ProjectList(projectFolders.size());
+        res.setEventListener(getEventListener());
+        for (Path projectFolder : projectFolders) {
+            if (includeMatchers.isEmpty() || matchesAny(includeMatchers, root.relativize(projectFolder)))
+                res.add(new Project(projectFolder.toFile()));
+        }
+        return res;
+    }
+
+    private static boolean matchesAny(@NotNull List<PathMatcher> matchers, @NotNull Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path))
+                return true;
+        }
+        return false;
+    }
+
+    private void warn(@NotNull String message) {
+        if (getEventListener() != null)
+            getEventListener().onEvent(BuildEvent.warning(null, message));
+    }
+
+    /**
+     * Reads the ignore file in the specified folder if there is one.
+     *
+     * @return The rules of the ignore file, empty if the folder does not contain one
+     */
+    @NotNull
+    private List<IgnoreRule> readIgnoreFile(@NotNull Path folder) {
+        Path ignoreFile = folder.resolve(IGNORE_FILE_NAME);
+        if (!Files.isRegularFile(ignoreFile))
+            return Collections.emptyList();
+
+        List<IgnoreRule> res = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(ignoreFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#"))
+                    res.add(new IgnoreRule(folder, line));
+            }
+        } catch (IOException | RuntimeException e) {
+            // invalid globs throw a PatternSyntaxException
+            warn("(" + ignoreFile + "): Unable to read the ignore file, ignoring it: " + e.getMessage());
+        }
+        return res;
+    }
+
+    /**
+     * Scans one folder: returns the folder itself if it is a project below the root, otherwise scans its subfolders in parallel.
+     */
+    private class ScanTask extends RecursiveTask<List<Path>> {
+        private static final long serialVersionUID = 1L;
+        @NotNull
+        private final Path folder;
+        private final int depth;
+        @NotNull
+        private final List<IgnoreRule> rules;
+
+        ScanTask(@NotNull Path folder, int depth, @NotNull List<IgnoreRule> rules) {
+            this.folder = folder;
+            this.depth = depth;
+            this.rules = rules;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            // the root is the folder which contains the projects, even if it has a pom of its own
+            if (depth > 0 && Files.isRegularFile(folder.resolve("pom.xml")))
+                return Collections.singletonList(folder);
+            if (depth >= maxDepth)
+                return Collections.emptyList();
+
+            List<IgnoreRule> folderRules = rules;
+            List<IgnoreRule> ignoreFileRules = readIgnoreFile(folder);
+            if (!ignoreFileRules.isEmpty()) {
+                folderRules = new ArrayList<>(rules);
+                folderRules.addAll(ignoreFileRules);
+            }
+
+            List<Path> subfolders = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(folder)) {
+                for (Path child : children) {
+                    if (!child.getFileName().toString().startsWith(".")
+                            && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)
+                            && !isIgnored(child, folderRules))
+                        subfolders.add(child);
+                }
+            } catch (IOException e) {
+                warn("(" + folder + "): Unable to list the folder, skipping it: " + e.getMessage());
+                return Collections.emptyList();
+            }
+            Collections.sort(subfolders);
+
+            List<ScanTask> tasks = new ArrayList<>(subfolders.size());
+            for (Path subfolder : subfolders)
+                tasks.add(new ScanTask(subfolder, depth + 1, folderRules));
+            invokeAll(tasks);
+
+            List<Path> res = new ArrayList<>();
+            for (ScanTask task : tasks)
+                res.addAll(task.join());
+            return res;
+        }
+
+        private boolean isIgnored(@NotNull Path child, @NotNull List<IgnoreRule> rules) {
+            for (IgnoreRule rule : rules) {
+                if (rule.matches(child))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    private static class IgnoreRule {
+        @NotNull
+        private final Path baseFolder;
+        @NotNull
+        private final PathMatcher matcher;
+        // patterns without a slash match the folder name at any depth below the base folder
+        private final boolean matchesName;
+
+        IgnoreRule(@NotNull Path baseFolder, @NotNull String pattern) {
+            String normalizedPattern = pattern.replace('\\', '/');
+            while (normalizedPattern.length() > 1 && normalizedPattern.endsWith("/"))
+                normalizedPattern = normalizedPattern.substring(0, normalizedPattern.length() - 1);
+            // like in a .gitignore file, a slash anywhere but at the end anchors the pattern to the base folder
+            this.matchesName = !normalizedPattern.contains("/");
+            if (normalizedPattern.startsWith("/"))
+                normalizedPattern = normalizedPattern.substring(1);
+            this.baseFolder = baseFolder;
+            this.matcher = baseFolder.getFileSystem().getPathMatcher("glob:" + normalizedPattern);
+        }
+
+        boolean matches(@NotNull Path folder) {
+            if (!folder.startsWith(baseFolder))
+                return false;
+            return matcher.matches(matchesName ? folder.getFileName() : baseFolder.relativize(folder));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class BuildDurationStoreTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void keepsTheValuesOfModulesAndStagesApartFromTheirProject() throws Exception {
+        File projectFolder = temporaryFolder.newFolder("project");
+        Project project = new Project(projectFolder);
+        Project root = new ModuleProject(projectFolder, project, null);
+        Project module = new ModuleProject(new File(projectFolder, "module"), project, "module");
+        Project stage = new StageProject(root, 0, Collections.singletonList("compile"), false);
+        File storeFile = new File(temporaryFolder.getRoot(), "durations.properties");
+
+        BuildDurationStore store = new BuildDurationStore(storeFile);
+        store.setDuration(project, 1000);
+        store.setDuration(root, 2000);
+        store.setDuration(module, 3000);
+        store.setDuration(stage, 4000);
+        store.save();
+
+        BuildDurationStore reloaded = new BuildDurationStore(storeFile);
+        assertEquals(1000, reloaded.getDuration(project));
+        assertEquals(2000, reloaded.getDuration(root));
+        assertEquals(3000, reloaded.getDuration(module));
+        assertEquals(4000, reloaded.getDuration(stage));
+    }
+}
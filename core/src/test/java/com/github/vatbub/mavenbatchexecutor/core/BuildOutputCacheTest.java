@@ -0,0 +1,112 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.maven.model.Model;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class BuildOutputCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private BuildOutputCache cache;
+    private File projectFolder;
+    private Path jar;
+    private Path installedJar;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new BuildOutputCache(temporaryFolder.newFolder("cache"), Long.MAX_VALUE);
+        cache.setLocalRepository(temporaryFolder.newFolder("repository"));
+        projectFolder = temporaryFolder.newFolder("project");
+        jar = projectFolder.toPath().resolve("target").resolve("project-1.0.jar");
+        installedJar = cache.getLocalRepository().toPath().resolve("com/example/project/1.0/project-1.0.jar");
+
+        Files.createDirectories(jar.getParent());
+        Files.write(jar, "built".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(installedJar.getParent());
+        Files.write(installedJar, "installed".getBytes(StandardCharsets.UTF_8));
+
+        Model model = new Model();
+        model.setGroupId("com.example");
+        model.setArtifactId("project");
+        model.setVersion("1.0");
+        model.setPomFile(new File(projectFolder, "pom.xml"));
+        cache.store("key", projectFolder, Collections.singletonList(model), 0);
+        Files.delete(jar);
+        Files.delete(installedJar);
+    }
+
+    /**
+     * Checks the permissions rather than {@link File#canWrite()} which ignores them when running as root
+     */
+    private static boolean isWritable(Path file) throws IOException {
+        if (Files.getFileStore(file).supportsFileAttributeView(PosixFileAttributeView.class))
+            return Files.getPosixFilePermissions(file).contains(PosixFilePermission.OWNER_WRITE);
+        return file.toFile().canWrite();
+    }
+
+    @Test
+    public void restoresCopiesByDefault() throws IOException {
+        assertFalse(cache.isUseHardLinks());
+        assertTrue(cache.restore("key", projectFolder));
+        assertEquals("built", new String(Files.readAllBytes(jar), StandardCharsets.UTF_8));
+        assertEquals("installed", new String(Files.readAllBytes(installedJar), StandardCharsets.UTF_8));
+
+        // modifying a restored file in place must not modify the cache entry
+        Files.write(jar, "modified".getBytes(StandardCharsets.UTF_8));
+        Files.delete(installedJar);
+        assertTrue(cache.restore("key", projectFolder));
+        assertEquals("built", new String(Files.readAllBytes(jar), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void restoresReadOnlyHardLinksIfEnabled() throws IOException {
+        cache.setUseHardLinks(true);
+        assertTrue(cache.restore("key", projectFolder));
+        assertEquals("built", new String(Files.readAllBytes(jar), StandardCharsets.UTF_8));
+        assertFalse(isWritable(jar));
+
+        // copies restored later are writable again
+        cache.setUseHardLinks(false);
+        assertTrue(cache.restore("key", projectFolder));
+        assertTrue(isWritable(jar));
+    }
+
+    @Test
+    public void returnsFalseForUnknownEntries() throws IOException {
+        assertFalse(cache.restore("unknown", projectFolder));
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BuildSchedulerTest {
+    private static Project project(String name, Project... dependencies) {
+        Project project = new Project(new File(name));
+        project.getDependencies().addAll(Arrays.asList(dependencies));
+        return project;
+    }
+
+    @Test
+    public void runsAtMostTheConfiguredNumberOfBuildsAtOnce() throws InterruptedException {
+        List<Project> projects = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            projects.add(project("p" + i));
+        AtomicInteger runningBuilds = new AtomicInteger();
+        AtomicInteger maxRunningBuilds = new AtomicInteger();
+        Set<Project> builtProjects = Collections.synchronizedSet(new HashSet<>());
+
+        BuildScheduler scheduler = new BuildScheduler(projects, 3, project -> 1, (project, readyTime, retryCount) -> {
+            int running = runningBuilds.incrementAndGet();
+            maxRunningBuilds.accumulateAndGet(running, Math::max);
+            Thread.sleep(50);
+            runningBuilds.decrementAndGet();
+            builtProjects.add(project);
+            return true;
+        });
+
+        assertTrue(scheduler.run().isEmpty());
+        assertEquals(new HashSet<>(projects), builtProjects);
+        assertEquals(3, maxRunningBuilds.get());
+    }
+
+    @Test
+    public void startsDependentsOnlyAfterTheirDependenciesFinished() throws InterruptedException {
+        Project a = project("a");
+        Project b = project("b");
+        Project c = project("c", a, b);
+        Project d = project("d", c);
+        Set<Project> finishedProjects = Collections.synchronizedSet(new HashSet<>());
+        List<String> violations = Collections.synchronizedList(new ArrayList<>());
+
+        BuildScheduler scheduler = new BuildScheduler(Arrays.asList(d, c, b, a), 4, project -> 1, (project, readyTime, retryCount) -> {
+            for (Project dependency : project.getDependencies()) {
+                if (!finishedProjects.contains(dependency))
+                    violations.add(project + " started before " + dependency);
+            }
+            Thread.sleep(20);
+            finishedProjects.add(project);
+            return true;
+        });
+
+        assertTrue(scheduler.run().isEmpty());
+        assertEquals(Collections.emptyList(), violations);
+        assertEquals(4, finishedProjects.size());
+    }
+
+    @Test
+    public void skipsDependentsOfFailedBuilds() throws InterruptedException {
+        Project a = project("a");
+        Project b = project("b", a);
+        Project c = project("c", b);
+        Project independent = project("independent");
+        Set<Project> builtProjects = Collections.synchronizedSet(new HashSet<>());
+
+        BuildScheduler scheduler = new BuildScheduler(Arrays.asList(a, b, c, independent), 2, project -> 1, (project, readyTime, retryCount) -> {
+            builtProjects.add(project);
+            return !project.equals(a);
+        });
+
+        assertEquals(Executor.FailurePolicy.FAIL_AT_END, scheduler.getFailurePolicy());
+        assertTrue(scheduler.run().isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(a, independent)), builtProjects);
+        Map<Project, Project> expectedSkippedProjects = new HashMap<>();
+        expectedSkippedProjects.put(b, a);
+        expectedSkippedProjects.put(c, a);
+        assertEquals(expectedSkippedProjects, scheduler.getSkippedProjects());
+    }
+
+    @Test
+    public void buildsDependentsOfFailedBuildsIfFailuresAreIgnored() throws InterruptedException {
+        Project a = project("a");
+        Project b = project("b", a);
+        Set<Project> builtProjects = Collections.synchronizedSet(new HashSet<>());
+
+        BuildScheduler scheduler = new BuildScheduler(Arrays.asList(a, b), 2, project -> 1, (project, readyTime, retryCount) -> {
+            builtProjects.add(project);
+            return !project.equals(a);
+        });
+        scheduler.setFailurePolicy(Executor.FailurePolicy.FAIL_NEVER);
+
+        assertTrue(scheduler.run().isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(a, b)), builtProjects);
+        assertTrue(scheduler.getSkippedProjects().isEmpty());
+    }
+
+    @Test
+    public void cancelInterruptsRunningBuildsAndCancelsPendingOnes() throws InterruptedException {
+        Project running = project("running");
+        Project pending = project("pending", running);
+        Project alsoPending = project("alsoPending", pending);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger interruptedBuilds = new AtomicInteger();
+
+        BuildScheduler scheduler = new BuildScheduler(Arrays.asList(running, pending, alsoPending), 2, project -> 1, (project, readyTime, retryCount) -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interruptedBuilds.incrementAndGet();
+                return false;
+            }
+            return true;
+        });
+
+        Thread canceller = new Thread(() -> {
+            try {
+                started.await();
+                scheduler.cancel();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        canceller.start();
+
+        assertTrue(scheduler.run().isEmpty());
+        canceller.join();
+        assertTrue(scheduler.isCancelled());
+        assertEquals(1, interruptedBuilds.get());
+        assertEquals(new HashSet<>(Arrays.asList(pending, alsoPending)), scheduler.getCancelledProjects());
+    }
+
+    @Test
+    public void failFastCancelsTheRemainingBuilds() throws InterruptedException {
+        Project failing = project("failing");
+        Project dependent = project("dependent", failing);
+        Set<Project> builtProjects = Collections.synchronizedSet(new HashSet<>());
+
+        BuildScheduler scheduler = new BuildScheduler(Arrays.asList(failing, dependent), 1, project -> 1, (project, readyTime, retryCount) -> {
+            builtProjects.add(project);
+            return false;
+        });
+        scheduler.setFailurePolicy(Executor.FailurePolicy.FAIL_FAST);
+
+        assertTrue(scheduler.run().isEmpty());
+        assertTrue(scheduler.isCancelled());
+        assertEquals(Collections.singleton(failing), builtProjects);
+        assertEquals(Collections.singleton(dependent), scheduler.getCancelledProjects());
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class BuildWatchdogTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private File projectFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        projectFolder = temporaryFolder.newFolder("project");
+        Files.write(new File(projectFolder, "pom.xml").toPath(), Arrays.asList(
+                "<project>",
+                "  <modelVersion>4.0.0</modelVersion>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>project</artifactId>",
+                "  <version>1.0</version>",
+                "</project>"), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a maven home whose {@code bin/mvn} runs the specified shell script instead of maven
+     */
+    private File stubMavenHome(String... script) throws IOException {
+        assumeTrue("The stub mvn executable requires a POSIX shell", new File("/bin/sh").canExecute());
+        File mavenHome = temporaryFolder.newFolder("maven");
+        File mvn = new File(mavenHome, "bin/mvn");
+        assertTrue(mvn.getParentFile().mkdirs());
+        List<String> lines = new ArrayList<>();
+        lines.add("#!/bin/sh");
+        lines.addAll(Arrays.asList(script));
+        Files.write(mvn.toPath(), lines, StandardCharsets.UTF_8);
+        assertTrue(mvn.setExecutable(true));
+        return mavenHome;
+    }
+
+    private Executor createExecutor(File mavenHome) {
+        Executor executor = new Executor(new ProjectList(Collections.singletonList(new Project(projectFolder))));
+        executor.setMavenHome(mavenHome.getAbsolutePath());
+        executor.setSmartOrder(false);
+        executor.setOutputSetting(Executor.OutputSetting.IGNORE);
+        executor.setBuildDurationStoreFile(null);
+        executor.setRevisionStoreFile(null);
+        return executor;
+    }
+
+    @Test(timeout = 60000)
+    public void stopsBuildsWhichExceedTheirTimeout() throws Exception {
+        // the build starts a child process which has to be stopped as well
+        Executor executor = createExecutor(stubMavenHome("echo started", "sleep 120 &", "wait"));
+        executor.setBuildTimeout(Duration.ofSeconds(1));
+
+        long startNanos = System.nanoTime();
+        List<BuildResult> results = executor.executeBuilds();
+
+        assertEquals(1, results.size());
+        assertEquals(BuildResult.Status.TIMED_OUT, results.get(0).getStatus());
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos) < 30);
+    }
+
+    @Test(timeout = 60000)
+    public void stopsSilentBuilds() throws Exception {
+        Executor executor = createExecutor(stubMavenHome("echo started", "sleep 120"));
+        executor.setSilenceTimeout(Duration.ofSeconds(1));
+
+        List<BuildResult> results = executor.executeBuilds();
+
+        assertEquals(BuildResult.Status.TIMED_OUT, results.get(0).getStatus());
+        assertNotNull(results.get(0).getExecutionException());
+        assertTrue(results.get(0).getExecutionException().getMessage().contains("did not print anything"));
+    }
+
+    @Test(timeout = 60000)
+    public void keepsBuildsWhichPrintRegularly() throws Exception {
+        Executor executor = createExecutor(stubMavenHome("for i in 1 2 3 4 5 6 7 8; do echo line $i; sleep 0.25; done"));
+        executor.setSilenceTimeout(Duration.ofSeconds(1));
+
+        List<BuildResult> results = executor.executeBuilds();
+
+        assertEquals(BuildResult.Status.SUCCESS, results.get(0).getStatus());
+    }
+
+    @Test(timeout = 60000)
+    public void keepsBuildsSuccessfulIfTheirLogCannotBeWritten() throws Exception {
+        Executor executor = createExecutor(stubMavenHome("echo line 1", "echo line 2"));
+        executor.setOutputSetting(Executor.OutputSetting.TO_FILE);
+        executor.setSilenceTimeout(Duration.ofSeconds(30));
+        // a folder in place of the log file makes writing the log fail
+        assertTrue(new File(projectFolder, "target/batchBuildOutput.log").mkdirs());
+        CountDownLatch warned = new CountDownLatch(1);
+        executor.getEventPublisher().addListener(event -> {
+            if (event.getType() == BuildEvent.Type.WARNING && event.getMessage().contains("build log"))
+                warned.countDown();
+        });
+
+        List<BuildResult> results = executor.executeBuilds();
+
+        assertEquals(BuildResult.Status.SUCCESS, results.get(0).getStatus());
+        assertTrue(warned.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void expiresTheTotalTimeout() throws InterruptedException {
+        CountDownLatch totalTimeoutAction = new CountDownLatch(1);
+        CountDownLatch killed = new CountDownLatch(1);
+        try (BuildWatchdog watchdog = new BuildWatchdog(Duration.ofMillis(100), totalTimeoutAction::countDown, event -> {
+        })) {
+            BuildWatchdog.Watch watch = watchdog.watch(new Project(projectFolder), null, null, killed::countDown);
+            totalTimeoutAction.await();
+            killed.await();
+            assertTrue(watchdog.isTotalTimeoutExpired());
+            assertTrue(watch.isTimedOut());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class GitChangeDetectorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private File invocationLog;
+
+    @Before
+    public void setUp() {
+        assumeTrue("The stub git executable requires a POSIX shell", new File("/bin/sh").canExecute());
+        invocationLog = new File(temporaryFolder.getRoot(), "invocations.log");
+    }
+
+    /**
+     * Creates an executable which logs its invocations, runs the specified script and prints the specified revision
+     */
+    private String stubGit(String script, String revision) throws IOException {
+        File executable = temporaryFolder.newFile("git");
+        Files.write(executable.toPath(), Arrays.asList(
+                "#!/bin/sh",
+                "echo \"$PWD $*\" >> '" + invocationLog.getAbsolutePath() + "'",
+                script,
+                "echo " + revision), StandardCharsets.UTF_8);
+        assertTrue(executable.setExecutable(true));
+        return executable.getAbsolutePath();
+    }
+
+    private File repository(String name) throws IOException {
+        File res = temporaryFolder.newFolder(name);
+        assertTrue(new File(res, ".git").mkdir());
+        return res;
+    }
+
+    @Test
+    public void invokesGitOncePerRepository() throws Exception {
+        File repository = repository("repository");
+        File module = new File(repository, "module");
+        assertTrue(module.mkdir());
+        File noRepository = temporaryFolder.newFolder("noRepository");
+        Project root = new Project(repository);
+        Project moduleProject = new Project(module);
+
+        GitChangeDetector detector = new GitChangeDetector();
+        detector.setGitExecutable(stubGit("", "abc123"));
+        Map<Project, String> revisions = detector.getHeadRevisions(Arrays.asList(root, moduleProject, new Project(noRepository), root));
+
+        assertEquals("abc123", revisions.get(root));
+        assertEquals("abc123", revisions.get(moduleProject));
+        assertEquals(2, revisions.size());
+        List<String> invocations = Files.readAllLines(invocationLog.toPath(), StandardCharsets.UTF_8);
+        assertEquals(Collections.singletonList(repository.getCanonicalPath() + " rev-parse --verify HEAD"), invocations);
+    }
+
+    @Test(timeout = 30000)
+    public void drainsTheErrorOutputOfGit() throws Exception {
+        File repository = repository("repository");
+        GitChangeDetector detector = new GitChangeDetector();
+        // far more than the pipe buffer of any platform
+        detector.setGitExecutable(stubGit("i=0; while [ $i -lt 20000 ]; do echo 'warning: some noise on the error output' >&2; i=$((i+1)); done", "abc123"));
+
+        assertEquals("abc123", detector.getHeadRevision(repository));
+    }
+
+    @Test
+    public void diffsEachRepositoryOnce() throws Exception {
+        File repository = repository("repository");
+        File changed = new File(repository, "changed");
+        File unchanged = new File(repository, "unchanged");
+        assertTrue(changed.mkdir());
+        assertTrue(unchanged.mkdir());
+        Project changedProject = new Project(changed);
+        Project unchangedProject = new Project(unchanged);
+
+        GitChangeDetector detector = new GitChangeDetector();
+        detector.setDefaultRange("origin/master...HEAD");
+        detector.setGitExecutable(stubGit("printf 'changed/pom.xml\\0'", ""));
+        Set<Project> changedProjects = detector.getChangedProjects(Arrays.asList(changedProject, unchangedProject));
+
+        assertEquals(Collections.singleton(changedProject), changedProjects);
+        List<String> invocations = Files.readAllLines(invocationLog.toPath(), StandardCharsets.UTF_8);
+        assertEquals(Collections.singletonList(repository.getCanonicalPath() + " diff --name-only -z origin/master...HEAD --"), invocations);
+    }
+
+    @Test
+    public void considersProjectsChangedIfGitFailsToDiff() throws Exception {
+        File repository = repository("repository");
+        Project project = new Project(repository);
+        List<BuildEvent> events = new CopyOnWriteArrayList<>();
+        GitChangeDetector detector = new GitChangeDetector();
+        detector.setEventListener(events::add);
+        detector.setDefaultRange("origin/master...HEAD");
+        detector.setGitExecutable(stubGit("echo 'fatal: bad revision' >&2; exit 128", "unused"));
+
+        assertEquals(Collections.singleton(project), detector.getChangedProjects(Collections.singletonList(project)));
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).getMessage().contains("fatal: bad revision"));
+    }
+
+    @Test
+    public void reportsFailuresAsWarnings() throws Exception {
+        File repository = repository("repository");
+        List<BuildEvent> events = new CopyOnWriteArrayList<>();
+        GitChangeDetector detector = new GitChangeDetector();
+        detector.setEventListener(events::add);
+        detector.setGitExecutable(stubGit("echo 'fatal: broken repository' >&2; exit 128", "unused"));
+
+        assertNull(detector.getHeadRevision(repository));
+        assertEquals(1, events.size());
+        assertEquals(BuildEvent.Type.WARNING, events.get(0).getType());
+        assertTrue(events.get(0).getMessage().contains("fatal: broken repository"));
+    }
+}
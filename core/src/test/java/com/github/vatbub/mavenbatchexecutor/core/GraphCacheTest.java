@@ -0,0 +1,161 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.maven.model.Model;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class GraphCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void restoresPomsWithLongPropertyValues() throws Exception {
+        StringBuilder longValue = new StringBuilder();
+        while (longValue.length() < 100_000)
+            longValue.append("0123456789");
+        File projectFolder = temporaryFolder.newFolder("project");
+        File pomFile = new File(projectFolder, "pom.xml");
+        Files.write(pomFile.toPath(), ("<project>\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>com.example</groupId>\n"
+                + "  <artifactId>project</artifactId>\n"
+                + "  <version>1.0</version>\n"
+                + "  <properties>\n"
+                + "    <long.value>" + longValue + "</long.value>\n"
+                + "  </properties>\n"
+                + "</project>\n").getBytes(StandardCharsets.UTF_8));
+        File cacheFile = new File(temporaryFolder.getRoot(), "graph.cache");
+
+        ProjectList projectList = new ProjectList(Collections.singletonList(new Project(projectFolder)));
+        projectList.setGraphCacheFile(cacheFile);
+        projectList.getSmartOrder();
+        assertTrue(cacheFile.isFile());
+
+        List<BuildEvent> events = new CopyOnWriteArrayList<>();
+        GraphCache graphCache = GraphCache.load(cacheFile, events::add);
+        Model model = graphCache.getUnchangedModel(pomFile);
+        assertEquals(Collections.emptyList(), events);
+        assertNotNull(model);
+        assertEquals(longValue.toString(), model.getProperties().getProperty("long.value"));
+    }
+
+    @Test
+    public void resolvesTheGraphEvenIfTheCacheCannotBeSaved() throws Exception {
+        File projectFolder = temporaryFolder.newFolder("project");
+        Files.write(new File(projectFolder, "pom.xml").toPath(), ("<project>\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>com.example</groupId>\n"
+                + "  <artifactId>project</artifactId>\n"
+                + "  <version>1.0</version>\n"
+                + "</project>\n").getBytes(StandardCharsets.UTF_8));
+        // a regular file cannot contain the cache file
+        File blockingFile = temporaryFolder.newFile("blocking");
+
+        List<BuildEvent> events = new CopyOnWriteArrayList<>();
+        ProjectList projectList = new ProjectList(Collections.singletonList(new Project(projectFolder)));
+        projectList.setGraphCacheFile(new File(blockingFile, "graph.cache"));
+        projectList.setEventListener(events::add);
+
+        assertEquals(projectList, projectList.getSmartOrder());
+        assertEquals(1, events.size());
+        assertEquals(BuildEvent.Type.WARNING, events.get(0).getType());
+    }
+
+    @Test
+    public void warnsAboutTruncatedCacheFiles() throws Exception {
+        File projectFolder = temporaryFolder.newFolder("project");
+        File pomFile = new File(projectFolder, "pom.xml");
+        Files.write(pomFile.toPath(), ("<project>\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>com.example</groupId>\n"
+                + "  <artifactId>project</artifactId>\n"
+                + "  <version>1.0</version>\n"
+                + "</project>\n").getBytes(StandardCharsets.UTF_8));
+        File cacheFile = new File(temporaryFolder.getRoot(), "graph.cache");
+        ProjectList projectList = new ProjectList(Collections.singletonList(new Project(projectFolder)));
+        projectList.setGraphCacheFile(cacheFile);
+        projectList.getSmartOrder();
+        byte[] content = Files.readAllBytes(cacheFile.toPath());
+        Files.write(cacheFile.toPath(), Arrays.copyOf(content, content.length / 2));
+
+        List<BuildEvent> events = new CopyOnWriteArrayList<>();
+        GraphCache graphCache = GraphCache.load(cacheFile, events::add);
+
+        assertNull(graphCache.getUnchangedModel(pomFile));
+        assertEquals(1, events.size());
+        assertEquals(BuildEvent.Type.WARNING, events.get(0).getType());
+    }
+
+    @Test
+    public void ignoresCacheFilesWithInvalidIndices() throws Exception {
+        // the cached graph of a single project ends with the number of its dependencies, which is 0
+        assertCorruptedGraphIsIgnored(1, 7);
+    }
+
+    @Test
+    public void ignoresCacheFilesWithInvalidLengths() throws Exception {
+        assertCorruptedGraphIsIgnored(Integer.MAX_VALUE);
+    }
+
+    private void assertCorruptedGraphIsIgnored(int... dependencies) throws Exception {
+        File projectFolder = temporaryFolder.newFolder("project");
+        Files.write(new File(projectFolder, "pom.xml").toPath(), ("<project>\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>com.example</groupId>\n"
+                + "  <artifactId>project</artifactId>\n"
+                + "  <version>1.0</version>\n"
+                + "</project>\n").getBytes(StandardCharsets.UTF_8));
+        File cacheFile = new File(temporaryFolder.getRoot(), "graph.cache");
+        ProjectList originalList = new ProjectList(Collections.singletonList(new Project(projectFolder)));
+        originalList.setGraphCacheFile(cacheFile);
+        originalList.getSmartOrder();
+        byte[] content = Files.readAllBytes(cacheFile.toPath());
+        ByteBuffer corrupted = ByteBuffer.allocate(content.length - 4 + dependencies.length * 4);
+        corrupted.put(content, 0, content.length - 4);
+        for (int dependency : dependencies)
+            corrupted.putInt(dependency);
+        Files.write(cacheFile.toPath(), corrupted.array());
+
+        List<BuildEvent> events = new CopyOnWriteArrayList<>();
+        ProjectList projectList = new ProjectList(Collections.singletonList(new Project(projectFolder)));
+        projectList.setGraphCacheFile(cacheFile);
+        projectList.setEventListener(events::add);
+
+        assertEquals(1, projectList.getSmartOrder().size());
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).getMessage().contains("Unable to read the graph cache"));
+    }
+}
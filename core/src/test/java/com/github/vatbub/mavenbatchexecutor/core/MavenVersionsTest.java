@@ -0,0 +1,68 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MavenVersionsTest {
+    @Test
+    public void ordersQualifiersBeforeTheRelease() {
+        assertTrue(MavenVersions.compare("1.0-alpha", "1.0-SNAPSHOT") < 0);
+        assertTrue(MavenVersions.compare("1.0-SNAPSHOT", "1.0") < 0);
+        assertTrue(MavenVersions.compare("1.0-alpha", "1.0") < 0);
+        assertTrue(MavenVersions.compare("1.0", "1.0-SNAPSHOT") > 0);
+        assertEquals(0, MavenVersions.compare("1.0", "1.0.0"));
+    }
+
+    @Test
+    public void honorsTheBoundariesOfHalfOpenRanges() {
+        assertTrue(MavenVersions.isRange("[1.0,2.0)"));
+        assertTrue(MavenVersions.isInRange("1.0", "[1.0,2.0)"));
+        assertTrue(MavenVersions.isInRange("1.9.9", "[1.0,2.0)"));
+        assertFalse(MavenVersions.isInRange("2.0", "[1.0,2.0)"));
+        assertFalse(MavenVersions.isInRange("1.0-SNAPSHOT", "[1.0,2.0)"));
+    }
+
+    @Test
+    public void honorsTheBoundaryOfRangesWithoutLowerBound() {
+        assertTrue(MavenVersions.isRange("(,1.0]"));
+        assertTrue(MavenVersions.isInRange("1.0", "(,1.0]"));
+        assertTrue(MavenVersions.isInRange("0.1", "(,1.0]"));
+        assertTrue(MavenVersions.isInRange("1.0-SNAPSHOT", "(,1.0]"));
+        assertFalse(MavenVersions.isInRange("1.0.1", "(,1.0]"));
+    }
+
+    @Test
+    public void ignoresTrailingZerosBeforeQualifiers() {
+        assertEquals(0, MavenVersions.compare("1.0-rc1", "1-rc1"));
+        assertEquals(0, MavenVersions.compare("1.0.0-SNAPSHOT", "1-SNAPSHOT"));
+        assertTrue(MavenVersions.compare("1.0-rc1", "1.0.1-rc1") < 0);
+        assertTrue(MavenVersions.isInRange("1.0-rc1", "[1-rc1]"));
+    }
+
+    @Test
+    public void plainVersionsAreNoRanges() {
+        assertFalse(MavenVersions.isRange("1.0"));
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class ProcessTreesTest {
+    @Before
+    public void setUp() {
+        assumeTrue("The test requires a POSIX shell", new File("/bin/sh").canExecute());
+        boolean processHandleAvailable;
+        try {
+            Class.forName("java.lang.ProcessHandle");
+            processHandleAvailable = true;
+        } catch (ClassNotFoundException e) {
+            processHandleAvailable = false;
+        }
+        assumeTrue("Descendants can only be found on Java 9 and newer", processHandleAvailable);
+    }
+
+    /**
+     * @return {@code false} if the process does not exist or only remains as a zombie which was not reaped yet
+     */
+    private static boolean isAlive(String pid) throws IOException, InterruptedException {
+        Path stat = Paths.get("/proc", pid, "stat");
+        if (Files.isDirectory(Paths.get("/proc", "self"))) {
+            if (!Files.exists(stat))
+                return false;
+            String content = new String(Files.readAllBytes(stat), StandardCharsets.UTF_8);
+            // the state follows the command name which is enclosed in parentheses
+            return content.charAt(content.lastIndexOf(')') + 2) != 'Z';
+        }
+        return new ProcessBuilder("kill", "-0", pid).start().waitFor() == 0;
+    }
+
+    @Test
+    public void destroysTheDescendantsOfTheProcess() throws Exception {
+        Process process = new ProcessBuilder("/bin/sh", "-c", "sleep 120 & echo $!; wait").start();
+        String childPid;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            childPid = reader.readLine().trim();
+            assertTrue(isAlive(childPid));
+
+            ProcessTrees.destroyForcibly(process);
+
+            assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (isAlive(childPid) && System.nanoTime() - deadline < 0)
+                Thread.sleep(50);
+        }
+        assertFalse("The child process " + childPid + " is still running", isAlive(childPid));
+    }
+}
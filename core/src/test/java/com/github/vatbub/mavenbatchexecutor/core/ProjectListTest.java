@@ -0,0 +1,108 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class ProjectListTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Creates a project whose pom depends on the poms of the specified projects
+     */
+    private Project project(String artifactId, String... dependencyArtifactIds) throws IOException {
+        File folder = temporaryFolder.newFolder(artifactId);
+        StringBuilder pom = new StringBuilder()
+                .append("<project>\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n")
+                .append("  <groupId>com.example</groupId>\n")
+                .append("  <artifactId>").append(artifactId).append("</artifactId>\n")
+                .append("  <version>1.0</version>\n")
+                .append("  <dependencies>\n");
+        for (String dependencyArtifactId : dependencyArtifactIds) {
+            pom.append("    <dependency>\n")
+                    .append("      <groupId>com.example</groupId>\n")
+                    .append("      <artifactId>").append(dependencyArtifactId).append("</artifactId>\n")
+                    .append("      <version>1.0</version>\n")
+                    .append("    </dependency>\n");
+        }
+        pom.append("  </dependencies>\n")
+                .append("</project>\n");
+        Files.write(folder.toPath().resolve("pom.xml"), pom.toString().getBytes(StandardCharsets.UTF_8));
+        return new Project(folder);
+    }
+
+    @Test
+    public void ordersDiamondAfterAllDependencies() throws Exception {
+        Project d = project("d", "b", "c");
+        Project c = project("c", "a");
+        Project b = project("b", "a");
+        Project a = project("a");
+
+        ProjectList buildOrder = new ProjectList(Arrays.asList(d, c, b, a)).getSmartOrder();
+
+        // b and c do not depend on each other, so they keep their relative order
+        assertEquals(Arrays.asList(a, c, b, d), buildOrder);
+        assertEquals(new HashSet<>(Arrays.asList(b, c)), new HashSet<>(d.getDependencies()));
+        assertEquals(Arrays.asList(a), b.getDependencies());
+    }
+
+    @Test
+    public void keepsTheOrderOfIndependentProjects() throws Exception {
+        Project third = project("third");
+        Project first = project("first");
+        Project second = project("second");
+
+        ProjectList buildOrder = new ProjectList(Arrays.asList(third, first, second)).getSmartOrder();
+
+        assertEquals(Arrays.asList(third, first, second), buildOrder);
+    }
+
+    @Test
+    public void reportsDependencyCycles() throws Exception {
+        Project x = project("x", "y");
+        Project y = project("y", "x");
+        Project dependent = project("dependent", "x");
+        Project independent = project("independent");
+
+        try {
+            new ProjectList(Arrays.asList(dependent, x, independent, y)).getSmartOrder();
+            fail("Expected a DependencyCycleException");
+        } catch (DependencyCycleException e) {
+            assertEquals(new HashSet<>(Arrays.asList(x, y)), new HashSet<>(e.getCycle()));
+            assertEquals(2, e.getCycle().size());
+            assertEquals(new HashSet<>(Arrays.asList(x, y, dependent)), new HashSet<>(e.getUnorderedProjects()));
+        }
+    }
+}
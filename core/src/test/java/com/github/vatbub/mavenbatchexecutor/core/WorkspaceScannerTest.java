@@ -0,0 +1,76 @@
+package com.github.vatbub.mavenbatchexecutor.core;
+
+/*-
+ * #%L
+ * maven-batch-executor.core
+ * %%
+ * Copyright (C) 2016 - 2018 Frederik Kammel
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class WorkspaceScannerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File project(String path) throws IOException {
+        File res = new File(temporaryFolder.getRoot(), path);
+        res.mkdirs();
+        Files.write(new File(res, "pom.xml").toPath(), "<project/>".getBytes(StandardCharsets.UTF_8));
+        return res;
+    }
+
+    private List<File> scan(WorkspaceScanner scanner) throws IOException {
+        List<File> res = new ArrayList<>();
+        for (Project project : scanner.scan())
+            res.add(project.getProjectFolder());
+        return res;
+    }
+
+    @Test
+    public void ignoresThePomOfTheRoot() throws IOException {
+        project("");
+        File first = project("first");
+        File second = project("second");
+
+        assertEquals(Arrays.asList(first, second), scan(new WorkspaceScanner(temporaryFolder.getRoot())));
+    }
+
+    @Test
+    public void onlySearchesTheDirectSubfoldersByDefault() throws IOException {
+        File direct = project("direct");
+        File nested = project("group/nested");
+
+        assertEquals(Collections.singletonList(direct), scan(new WorkspaceScanner(temporaryFolder.getRoot())));
+        WorkspaceScanner deepScanner = new WorkspaceScanner(temporaryFolder.getRoot());
+        deepScanner.setMaxDepth(2);
+        assertEquals(Arrays.asList(direct, nested), scan(deepScanner));
+    }
+}